@@ -0,0 +1,35 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 依次以 1、4、16、64 个线程运行基准测试，并开启 GC 分析（等价于 {@code -prof gc}）
+ * <p>
+ * 用法：{@code java -cp target/benchmarks.jar benchmark.BenchmarkRunner [基准测试类名的正则]}，
+ * 每种线程数的结果输出到 {@code jmh-result-<线程数>t.json}。
+ */
+public class BenchmarkRunner {
+
+    private static final int[] THREADS = {1, 4, 16, 64}; // 并发线程数
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "benchmark\\..*";
+
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threads + "t.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
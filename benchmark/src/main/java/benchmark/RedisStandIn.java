@@ -0,0 +1,80 @@
+package benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地 Redis 替身：通过 Testcontainers 在 Docker 中启动一个临时的 Redis 实例，基准测试结束后销毁
+ * <p>
+ * 设置了系统属性 {@code redis.host}（及可选的 {@code redis.port}）时，直接使用已有的 Redis，不再启动容器；
+ * 需要多个 Redis 时，第 i 个使用端口 {@code redis.port + i}。
+ */
+@Slf4j
+public class RedisStandIn implements AutoCloseable {
+
+    private static final DockerImageName IMAGE = DockerImageName.parse("redis:7-alpine");
+
+    private static final int REDIS_PORT = 6379;
+
+    private final GenericContainer<?> container; // 未使用外部 Redis 时启动的容器
+
+    private final String host;
+
+    private final int port;
+
+    private RedisStandIn(GenericContainer<?> container, String host, int port) {
+        this.container = container;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * 启动 Redis 替身
+     * @return Redis 替身
+     */
+    public static RedisStandIn start() {
+        String host = System.getProperty("redis.host");
+        if (host != null) {
+            return new RedisStandIn(null, host, Integer.getInteger("redis.port", REDIS_PORT));
+        }
+
+        GenericContainer<?> container = new GenericContainer<>(IMAGE).withExposedPorts(REDIS_PORT);
+        container.start();
+        log.info("Redis stand-in started at {}:{}", container.getHost(), container.getMappedPort(REDIS_PORT));
+        return new RedisStandIn(container, container.getHost(), container.getMappedPort(REDIS_PORT));
+    }
+
+    /**
+     * 启动多个相互独立的 Redis 替身，如用于分片限流
+     * @param count 数量
+     * @return Redis 替身列表
+     */
+    public static List<RedisStandIn> start(int count) {
+        String host = System.getProperty("redis.host");
+        List<RedisStandIn> standIns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            standIns.add(host != null ? new RedisStandIn(null, host, Integer.getInteger("redis.port", REDIS_PORT) + i) : start());
+        }
+        return standIns;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package benchmark.exception_handler;
+
+import exception_handler.entity.ErrorCode;
+import exception_handler.entity.WebResp;
+import exception_handler.exception.MyException;
+import exception_handler.exception.ResourceNotFoundException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 业务异常错误路径的吞吐量：抛出 → 捕获 → {@link WebResp#failure}
+ * <p>
+ * depth 为抛出前的调用深度，用来模拟 Spring MVC 中上百帧的调用栈，异常栈越深，填充的代价越大；
+ * stackless 为 {@link MyException#setStackless(boolean)} 的取值，false 即原来每次都记录完整异常栈的行为。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    @Param({"10", "100"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean stackless;
+
+    private final Map<String, Object> detail = Map.of("id", 1);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MyException.setStackless(stackless);
+    }
+
+    /**
+     * 每次创建新的异常
+     */
+    @Benchmark
+    public WebResp<?> throwNew() {
+        try {
+            call(depth, false);
+        } catch (MyException e) {
+            return WebResp.failure(e.getErrorCode(), e.getDetail());
+        }
+        return null;
+    }
+
+    /**
+     * 每次创建新的异常，并像原来的 GlobalExceptionHandler 一样在处理时再次填充异常栈
+     */
+    @Benchmark
+    public WebResp<?> throwNewAndRefill() {
+        try {
+            call(depth, false);
+        } catch (MyException e) {
+            e.fillInStackTrace();
+            return WebResp.failure(e.getErrorCode(), e.getDetail());
+        }
+        return null;
+    }
+
+    /**
+     * 抛出预先创建的异常
+     */
+    @Benchmark
+    public WebResp<?> throwCached() {
+        try {
+            call(depth, true);
+        } catch (MyException e) {
+            return WebResp.failure(e.getErrorCode(), e.getDetail());
+        }
+        return null;
+    }
+
+    private void call(int remaining, boolean cached) {
+        if (remaining > 0) {
+            call(remaining - 1, cached);
+            return;
+        }
+        throw cached ? MyException.cached(ErrorCode.RESOURCE_NOT_FOUND) : new ResourceNotFoundException(detail);
+    }
+
+}
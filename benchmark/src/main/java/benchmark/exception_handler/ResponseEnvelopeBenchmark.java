@@ -0,0 +1,68 @@
+package benchmark.exception_handler;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import exception_handler.converter.WebRespHttpMessageConverter;
+import exception_handler.entity.ErrorCode;
+import exception_handler.entity.WebResp;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建并序列化 {@link WebResp}：ObjectMapper 整体序列化与 {@link WebRespHttpMessageConverter} 拼接预先编码的片段对比
+ * <p>
+ * ObjectMapper 的配置与 Spring Boot 默认一致（JavaTimeModule，时间戳输出为 ISO-8601 字符串）；
+ * 建议加 {@code -prof gc} 观察每次操作的分配。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseEnvelopeBenchmark {
+
+    private final Map<String, Object> detail = Map.of("请求异常", "请求资源不存在");
+
+    private final OutputStream out = OutputStream.nullOutputStream();
+
+    private ObjectWriter objectWriter;
+
+    private WebRespHttpMessageConverter converter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        converter = new WebRespHttpMessageConverter(objectMapper);
+    }
+
+    @Benchmark
+    public void failureObjectMapper() throws IOException {
+        objectWriter.writeValue(out, WebResp.failure(ErrorCode.RESOURCE_NOT_FOUND, detail));
+    }
+
+    @Benchmark
+    public void failurePreEncoded() throws IOException {
+        converter.write(WebResp.failure(ErrorCode.RESOURCE_NOT_FOUND, detail), out);
+    }
+
+    @Benchmark
+    public void successObjectMapper() throws IOException {
+        objectWriter.writeValue(out, WebResp.success("测试成功", "测试数据"));
+    }
+
+    @Benchmark
+    public void successPreEncoded() throws IOException {
+        converter.write(WebResp.success("测试成功", "测试数据"), out);
+    }
+
+}
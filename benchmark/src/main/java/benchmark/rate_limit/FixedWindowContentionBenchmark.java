@@ -0,0 +1,55 @@
+package benchmark.rate_limit;
+
+import org.openjdk.jmh.annotations.*;
+import rate_limit.FixedWindowRateLimiter;
+import rate_limit.StripedFixedWindowRateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高并发下单个原子计数与分片计数的固定窗口限流器对比
+ * <p>
+ * 建议以 {@code -t 16}、{@code -t 64} 或 {@code -t max} 运行；limit 为每秒允许的请求数，
+ * 较小的 limit 下大部分请求被拒绝，可观察拒绝路径（借许可）的开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FixedWindowContentionBenchmark {
+
+    @Param({"1000", "100000000"})
+    public int limit;
+
+    @Param({"64"})
+    public int chunkSize;
+
+    private FixedWindowRateLimiter atomic;
+
+    private StripedFixedWindowRateLimiter striped;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        atomic = new FixedWindowRateLimiter(1000, limit, System.currentTimeMillis(), 0);
+        striped = new StripedFixedWindowRateLimiter(1000, limit, Runtime.getRuntime().availableProcessors(), chunkSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        atomic.close();
+        striped.close();
+    }
+
+    @Benchmark
+    public boolean atomic() {
+        return atomic.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean striped() {
+        return striped.tryAcquire();
+    }
+
+}
@@ -0,0 +1,155 @@
+package benchmark.rate_limit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import rate_limit.FixedWindowRateLimiter;
+import rate_limit.GcraRateLimiter;
+import rate_limit.KeyedRateLimiter;
+import rate_limit.LeakyBucketRateLimiter;
+import rate_limit.LocalSlidingWindowRateLimiter;
+import rate_limit.TokenBucketRateLimiter;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内限流器 tryAcquire 的吞吐量与延迟分布
+ * <p>
+ * 线程数通过 {@code -t 1/4/16/64} 或 {@link BenchmarkRunner} 指定，分配情况通过 {@code -prof gc} 查看。
+ * <ul>
+ *     <li>ALLOW_HEAVY：容量与速率足够大，几乎所有请求都被放行；</li>
+ *     <li>DENY_HEAVY：容量为 1 且每秒只生成 1 个许可，几乎所有请求都被拒绝。</li>
+ * </ul>
+ * 定时补充的令牌桶每毫秒最多生成 1 个令牌，漏桶每毫秒最多消费 1 个请求，二者在 ALLOW_HEAVY 下很快会退化为拒绝为主。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalRateLimiterBenchmark {
+
+    private static final int KEY_COUNT = 1024; // 按 key 限流时的 key 数
+
+    private static final Runnable NOOP = () -> {
+    };
+
+    @Param({"ALLOW_HEAVY", "DENY_HEAVY"})
+    public String load;
+
+    private TokenBucketRateLimiter scheduledTokenBucket;
+
+    private TokenBucketRateLimiter lazyTokenBucket;
+
+    private FixedWindowRateLimiter fixedWindow;
+
+    private LeakyBucketRateLimiter leakyBucket;
+
+    private LocalSlidingWindowRateLimiter localSlidingWindow;
+
+    private LocalSlidingWindowRateLimiter weightedSlidingWindow;
+
+    private GcraRateLimiter gcra;
+
+    private KeyedRateLimiter keyed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean allowHeavy = "ALLOW_HEAVY".equals(load);
+        if (allowHeavy) {
+            scheduledTokenBucket = new TokenBucketRateLimiter(Integer.MAX_VALUE, 1);
+            lazyTokenBucket = new TokenBucketRateLimiter(1_000_000, Duration.ofNanos(1));
+            fixedWindow = new FixedWindowRateLimiter(1000, Integer.MAX_VALUE, System.currentTimeMillis(), 0);
+            leakyBucket = LeakyBucketRateLimiter.withVirtualThreads(1 << 20, Duration.ofMillis(1));
+            localSlidingWindow = new LocalSlidingWindowRateLimiter(1000, Integer.MAX_VALUE);
+            weightedSlidingWindow = LocalSlidingWindowRateLimiter.weighted(1000, Integer.MAX_VALUE);
+            gcra = new GcraRateLimiter(1, 1_000_000, 1_000_000);
+            keyed = new KeyedRateLimiter(1_000_000, Duration.ofNanos(1), KEY_COUNT * 4);
+        } else {
+            scheduledTokenBucket = new TokenBucketRateLimiter(1, 1000);
+            lazyTokenBucket = new TokenBucketRateLimiter(1, Duration.ofSeconds(1));
+            fixedWindow = new FixedWindowRateLimiter(1000, 1, System.currentTimeMillis(), 0);
+            leakyBucket = LeakyBucketRateLimiter.withVirtualThreads(1, Duration.ofSeconds(1));
+            localSlidingWindow = new LocalSlidingWindowRateLimiter(1000, 1);
+            weightedSlidingWindow = LocalSlidingWindowRateLimiter.weighted(1000, 1);
+            gcra = new GcraRateLimiter(1000, 1);
+            keyed = new KeyedRateLimiter(1, Duration.ofSeconds(1), KEY_COUNT * 4);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduledTokenBucket.close();
+        lazyTokenBucket.close();
+        fixedWindow.close();
+        leakyBucket.close();
+        localSlidingWindow.close();
+        weightedSlidingWindow.close();
+        gcra.close();
+    }
+
+    /**
+     * 每个线程独立遍历 key，避免线程间共享游标
+     */
+    @State(Scope.Thread)
+    public static class KeyCursor {
+
+        private final String[] keys = new String[KEY_COUNT];
+
+        private int index;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < KEY_COUNT; i++) {
+                keys[i] = "user-" + i;
+            }
+        }
+
+        String next() {
+            index = (index + 1) & (KEY_COUNT - 1);
+            return keys[index];
+        }
+    }
+
+    @Benchmark
+    public boolean scheduledTokenBucket() {
+        return scheduledTokenBucket.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean lazyTokenBucket() {
+        return lazyTokenBucket.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean fixedWindow() {
+        return fixedWindow.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean leakyBucket() {
+        return leakyBucket.tryAcquire(NOOP);
+    }
+
+    @Benchmark
+    public boolean localSlidingWindow() {
+        return localSlidingWindow.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean weightedSlidingWindow() {
+        return weightedSlidingWindow.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean gcra() {
+        return gcra.tryAcquire();
+    }
+
+    @Benchmark
+    public void keyed(KeyCursor cursor, Blackhole blackhole) {
+        blackhole.consume(keyed.tryAcquire(cursor.next()));
+    }
+
+}
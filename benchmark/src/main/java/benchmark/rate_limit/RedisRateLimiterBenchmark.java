@@ -0,0 +1,151 @@
+package benchmark.rate_limit;
+
+import benchmark.RedisStandIn;
+import org.openjdk.jmh.annotations.*;
+import rate_limit.BucketedSlidingWindowRateLimiter;
+import rate_limit.LeasedSlidingWindowRateLimiter;
+import rate_limit.RedisGcraRateLimiter;
+import rate_limit.SlidingWindowRateLimiter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Redis 的滑动窗口限流器 tryAcquire 的吞吐量与延迟分布
+ * <p>
+ * Redis 由 {@link RedisStandIn} 在本地 Docker 中启动，所有线程共用同一个限流 key：
+ * <ul>
+ *     <li>slidingWindowNonAtomic / slidingWindowLua：每个线程一个独立的 {@link Jedis} 连接；</li>
+ *     <li>pooled：所有线程共享一个基于连接池的 {@link JedisPooled} 客户端；</li>
+ *     <li>pooledBatch：通过管道一次检查 {@value #BATCH_SIZE} 个 key，结果按每次调用（一批）计；</li>
+ *     <li>leased：共享 {@link JedisPooled}，每次预支最多 {@value #MAX_LEASE_SIZE} 个许可，在本地消耗；</li>
+ *     <li>gcra：共享 {@link JedisPooled}，每个 key 只保存一个理论到达时间；</li>
+ *     <li>bucketed：共享 {@link JedisPooled}，每个 key 一个按子窗口计数的 HASH，脚本开销与窗口内的请求数无关。</li>
+ * </ul>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisRateLimiterBenchmark {
+
+    private static final String KEY = "benchmark:sliding_window";
+
+    private static final String GCRA_KEY = "benchmark:gcra";
+
+    private static final String BUCKETED_KEY = "benchmark:bucketed";
+
+    private static final int BATCH_SIZE = 16; // 批量检查的 key 数
+
+    private static final int MAX_LEASE_SIZE = 64; // 单个租约的最大许可数
+
+    @Param({"ALLOW_HEAVY", "DENY_HEAVY"})
+    public String load;
+
+    private RedisStandIn redis;
+
+    private JedisPooled pool;
+
+    private SlidingWindowRateLimiter pooledLimiter;
+
+    private LeasedSlidingWindowRateLimiter leasedLimiter;
+
+    private RedisGcraRateLimiter gcraLimiter;
+
+    private BucketedSlidingWindowRateLimiter bucketedLimiter;
+
+    private List<String> batchKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redis = RedisStandIn.start();
+        pool = new JedisPooled(redis.getHost(), redis.getPort());
+        pooledLimiter = new SlidingWindowRateLimiter(pool, KEY, 1000, maxRequests());
+        leasedLimiter = new LeasedSlidingWindowRateLimiter(pool, KEY, 1000, maxRequests(), MAX_LEASE_SIZE, 100);
+        gcraLimiter = new RedisGcraRateLimiter(pool, GCRA_KEY, 1000, maxRequests());
+        bucketedLimiter = new BucketedSlidingWindowRateLimiter(pool, BUCKETED_KEY, 1000, maxRequests());
+        batchKeys = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batchKeys.add(KEY + ":" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        leasedLimiter.close();
+        pool.close();
+        redis.close();
+    }
+
+    private int maxRequests() {
+        return "ALLOW_HEAVY".equals(load) ? Integer.MAX_VALUE : 1;
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private Jedis jedis;
+
+        private SlidingWindowRateLimiter limiter;
+
+        @Setup(Level.Trial)
+        public void setUp(RedisRateLimiterBenchmark benchmark) {
+            jedis = new Jedis(benchmark.redis.getHost(), benchmark.redis.getPort());
+            limiter = new SlidingWindowRateLimiter(jedis, KEY, 1000, benchmark.maxRequests());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            jedis.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        pool.del(KEY, KEY + ":permits", GCRA_KEY, BUCKETED_KEY);
+        for (String key : batchKeys) {
+            pool.del(key, key + ":permits");
+        }
+    }
+
+    @Benchmark
+    public boolean slidingWindowNonAtomic(Client client) {
+        return client.limiter.tryAcquireNonAtomic();
+    }
+
+    @Benchmark
+    public boolean slidingWindowLua(Client client) {
+        return client.limiter.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean pooled() {
+        return pooledLimiter.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean[] pooledBatch() {
+        return pooledLimiter.tryAcquireBatch(batchKeys);
+    }
+
+    @Benchmark
+    public boolean leased() {
+        return leasedLimiter.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean gcra() {
+        return gcraLimiter.tryAcquire();
+    }
+
+    @Benchmark
+    public boolean bucketed() {
+        return bucketedLimiter.tryAcquire();
+    }
+
+}
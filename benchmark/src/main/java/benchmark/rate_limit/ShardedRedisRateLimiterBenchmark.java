@@ -0,0 +1,89 @@
+package benchmark.rate_limit;
+
+import benchmark.RedisStandIn;
+import org.openjdk.jmh.annotations.*;
+import rate_limit.ShardedSlidingWindowRateLimiter;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片滑动窗口限流器在 1 个与 3 个 Redis 节点上的吞吐量与延迟分布
+ * <p>
+ * 每个节点是一个独立的 {@link RedisStandIn}，请求随机分布在 {@value #KEYS} 个 key 上：
+ * <ul>
+ *     <li>single：每次检查一个 key，路由到其所属节点；</li>
+ *     <li>batch：一次检查 {@value #BATCH_SIZE} 个 key，按节点分组后各节点的管道并行往返，结果按每次调用（一批）计。</li>
+ * </ul>
+ * 单机测试时各节点共用 CPU，分片的收益主要体现在多线程下的 Redis 单线程瓶颈被分摊。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedRedisRateLimiterBenchmark {
+
+    private static final int KEYS = 1024; // key 的数量
+
+    private static final int BATCH_SIZE = 16; // 批量检查的 key 数
+
+    @Param({"1", "3"})
+    public int shards;
+
+    private List<RedisStandIn> redis;
+
+    private ShardedSlidingWindowRateLimiter limiter;
+
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redis = RedisStandIn.start(shards);
+        List<HostAndPort> endpoints = new ArrayList<>(shards);
+        for (RedisStandIn standIn : redis) {
+            endpoints.add(new HostAndPort(standIn.getHost(), standIn.getPort()));
+        }
+        limiter = new ShardedSlidingWindowRateLimiter(endpoints, 1000, Integer.MAX_VALUE);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "benchmark:sharded:" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        limiter.close();
+        redis.forEach(RedisStandIn::close);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        for (RedisStandIn standIn : redis) {
+            try (Jedis jedis = new Jedis(standIn.getHost(), standIn.getPort())) {
+                jedis.flushDB();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean single() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    public boolean[] batch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(keys[random.nextInt(KEYS)]);
+        }
+        return limiter.tryAcquireBatch(batch);
+    }
+
+}
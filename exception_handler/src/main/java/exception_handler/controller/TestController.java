@@ -5,6 +5,7 @@ import exception_handler.entity.WebResp;
 import exception_handler.exception.InternalServerErrorException;
 import exception_handler.exception.RequestValidationFailedException;
 import exception_handler.exception.ResourceNotFoundException;
+import exception_handler.ratelimit.RateLimited;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -34,4 +35,14 @@ public class TestController {
 
     }
 
+    /**
+     * 限流示例：每个客户端最多连续 2 次请求，之后每秒 1 次
+     */
+    @ResponseBody
+    @RateLimited(capacity = 2, refillInterval = 1000)
+    @RequestMapping(value = "/limited", method = {RequestMethod.GET})
+    public WebResp<String> limited() {
+        return WebResp.success("测试成功", "限流数据");
+    }
+
 }
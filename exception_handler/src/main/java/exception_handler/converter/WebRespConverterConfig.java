@@ -0,0 +1,24 @@
+package exception_handler.converter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * 注册 {@link WebRespHttpMessageConverter}，排在 Jackson 之前
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebRespConverterConfig implements WebMvcConfigurer {
+
+    private final WebRespHttpMessageConverter webRespHttpMessageConverter;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, webRespHttpMessageConverter);
+    }
+
+}
@@ -0,0 +1,298 @@
+package exception_handler.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import exception_handler.entity.ErrorCode;
+import exception_handler.entity.WebResp;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link WebResp} 的快速序列化
+ * <p>
+ * 每个 {@link ErrorCode} 的 code、status、message 都是常量，启动时就把它们编码为 JSON 片段，
+ * 写出时只拼接时间戳、detail 与 data：
+ * <pre>
+ * {"code":1002,"status":404,"timestamp":  ← 按 ErrorCode 预先编码
+ * "2026-01-01T00:00:00.000Z"              ← 同一毫秒内复用（WebResp 的时间戳在同一毫秒内是同一个 Instant）
+ * ,"message":"资源不存在","detail":       ← 按 ErrorCode 预先编码
+ * {...}                                    ← Jackson 序列化，null 与空 Map 直接写出
+ * ,"data":null}
+ * </pre>
+ * 整个响应体先写入线程复用的缓冲区，再连同 Content-Length 一次写出。
+ * <p>
+ * 输出与 Spring 的 {@link ObjectMapper} 逐字节一致：启动时用每个 ErrorCode 比对两种序列化结果，
+ * 不一致（如配置了 {@code spring.jackson.default-property-inclusion=non_null}）时整体退回 ObjectMapper 序列化。
+ * code/status/message 不对应任何 ErrorCode 的 WebResp 同样交给 ObjectMapper。
+ */
+@Slf4j
+@Component
+public class WebRespHttpMessageConverter extends AbstractHttpMessageConverter<WebResp<?>> {
+
+    private static final byte[] NULL = bytes("null");
+
+    private static final byte[] EMPTY_OBJECT = bytes("{}");
+
+    private static final byte[] DETAIL = bytes(",\"detail\":");
+
+    private static final byte[] DATA = bytes(",\"data\":");
+
+    private static final byte[] END = bytes("}");
+
+    private static final int MAX_CACHED_MESSAGES = 1024; // 成功响应的 message 最多缓存的个数
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024; // 超过该大小的缓冲区用完后不再保留
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter writer; // 写 detail、data 时不关闭缓冲区
+
+    private final Map<Integer, Envelope> envelopes = new HashMap<>(); // 错误码 → 预先编码的片段，启动后只读
+
+    private final Envelope success; // 成功响应的片段，message 另行编码
+
+    private final Map<String, byte[]> successMessages = new ConcurrentHashMap<>(); // 成功响应的 message → ,"message":"..."
+
+    private final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    private final boolean fastPath; // 快速序列化的结果是否与 ObjectMapper 一致
+
+    private volatile Timestamp lastTimestamp = new Timestamp(null, NULL); // 最近一次编码的时间戳
+
+    public WebRespHttpMessageConverter(ObjectMapper objectMapper) throws JsonProcessingException {
+        super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            envelopes.put(errorCode.getCode(), Envelope.of(objectMapper, errorCode.getCode(), errorCode.getHttpStatus().value(), errorCode.getMessage()));
+        }
+        this.success = Envelope.of(objectMapper, 0, HttpStatus.OK.value(), null);
+        this.fastPath = verify();
+        if (!fastPath) {
+            log.warn("WebResp fast serialization does not match the ObjectMapper output, falling back to ObjectMapper");
+        }
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return WebResp.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false; // 只负责写出，读取仍由 Jackson 负责
+    }
+
+    @Override
+    protected WebResp<?> readInternal(Class<? extends WebResp<?>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("WebRespHttpMessageConverter does not read", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(WebResp<?> resp, HttpOutputMessage outputMessage) throws IOException {
+        Buffer buffer = buffers.get();
+        try {
+            write(resp, buffer);
+            outputMessage.getHeaders().setContentLength(buffer.count);
+            outputMessage.getBody().write(buffer.bytes, 0, buffer.count);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * 序列化到输出流
+     * @param resp 响应体
+     * @param out 输出流，不会被关闭
+     */
+    public void write(WebResp<?> resp, OutputStream out) throws IOException {
+        Envelope envelope = fastPath ? envelopeOf(resp) : null;
+        if (envelope == null) {
+            writer.writeValue(out, resp);
+        } else {
+            write(resp, envelope, out);
+        }
+    }
+
+    private void write(WebResp<?> resp, Envelope envelope, OutputStream out) throws IOException {
+        out.write(envelope.head);
+        out.write(timestamp(resp.getTimestamp()));
+        out.write(envelope.message != null ? envelope.messageAndDetail : successMessage(resp.getMessage()));
+        writeValue(resp.getDetail(), out);
+        out.write(DATA);
+        writeValue(resp.getData(), out);
+        out.write(END);
+    }
+
+    /**
+     * 响应体对应的预先编码的片段，code/status/message 与任何 ErrorCode 都不对应时返回 null
+     */
+    private Envelope envelopeOf(WebResp<?> resp) {
+        if (resp.getCode() == success.code && resp.getStatus() == success.status) {
+            return resp.getMessage() != null ? success : null;
+        }
+        Envelope envelope = envelopes.get(resp.getCode());
+        return envelope != null && envelope.status == resp.getStatus() && envelope.message.equals(resp.getMessage()) ? envelope : null;
+    }
+
+    /**
+     * 编码后的时间戳，与上一次是同一个 Instant 时直接复用
+     */
+    private byte[] timestamp(Instant instant) throws JsonProcessingException {
+        Timestamp last = lastTimestamp;
+        if (last.instant == instant || (instant != null && instant.equals(last.instant))) {
+            return last.json;
+        }
+        last = new Timestamp(instant, objectMapper.writeValueAsBytes(instant));
+        lastTimestamp = last;
+        return last.json;
+    }
+
+    /**
+     * 成功响应的 ,"message":"...","detail": 片段；message 通常是常量，缓存已满后不再缓存
+     */
+    private byte[] successMessage(String message) throws JsonProcessingException {
+        byte[] encoded = successMessages.get(message);
+        if (encoded == null) {
+            encoded = Envelope.messageAndDetail(objectMapper, message);
+            if (successMessages.size() < MAX_CACHED_MESSAGES) {
+                successMessages.put(message, encoded);
+            }
+        }
+        return encoded;
+    }
+
+    private void writeValue(Object value, OutputStream out) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Map<?, ?> map && map.isEmpty()) {
+            out.write(EMPTY_OBJECT);
+        } else {
+            writer.writeValue(out, value);
+        }
+    }
+
+    /**
+     * 用每个 ErrorCode 和成功响应比对快速序列化与 ObjectMapper 的结果
+     */
+    private boolean verify() {
+        Instant timestamp = Instant.ofEpochMilli(1_700_000_000_123L);
+        Map<String, Object> detail = Map.of("key", "value");
+        Buffer buffer = new Buffer();
+        try {
+            for (ErrorCode errorCode : ErrorCode.values()) {
+                WebResp<?> resp = new WebResp<>(errorCode.getCode(), errorCode.getHttpStatus().value(), timestamp, errorCode.getMessage(), detail, null);
+                if (!matches(resp, buffer)) {
+                    return false;
+                }
+            }
+            return matches(new WebResp<>(0, HttpStatus.OK.value(), timestamp, "success", new HashMap<>(), "data"), buffer)
+                    && matches(new WebResp<>(0, HttpStatus.OK.value(), null, "success", null, null), buffer);
+        } catch (IOException e) {
+            log.warn("Failed to verify WebResp fast serialization", e);
+            return false;
+        }
+    }
+
+    private boolean matches(WebResp<?> resp, Buffer buffer) throws IOException {
+        Envelope envelope = envelopeOf(resp);
+        if (envelope == null) {
+            return false;
+        }
+        buffer.reset();
+        write(resp, envelope, buffer);
+        byte[] expected = objectMapper.writeValueAsBytes(resp);
+        return Arrays.equals(buffer.bytes, 0, buffer.count, expected, 0, expected.length);
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一个错误码的预先编码的片段
+     * @param code 错误码
+     * @param status HTTP状态码
+     * @param message 错误信息，成功响应为 null
+     * @param head {"code":...,"status":...,"timestamp":
+     * @param messageAndDetail ,"message":"...","detail":，成功响应为 null
+     */
+    private record Envelope(int code, int status, String message, byte[] head, byte[] messageAndDetail) {
+
+        static Envelope of(ObjectMapper objectMapper, int code, int status, String message) throws JsonProcessingException {
+            byte[] head = bytes("{\"code\":" + code + ",\"status\":" + status + ",\"timestamp\":");
+            return new Envelope(code, status, message, head, message != null ? messageAndDetail(objectMapper, message) : null);
+        }
+
+        static byte[] messageAndDetail(ObjectMapper objectMapper, String message) throws JsonProcessingException {
+            byte[] quoted = objectMapper.writeValueAsBytes(message);
+            byte[] prefix = bytes(",\"message\":");
+            byte[] encoded = Arrays.copyOf(prefix, prefix.length + quoted.length + DETAIL.length);
+            System.arraycopy(quoted, 0, encoded, prefix.length, quoted.length);
+            System.arraycopy(DETAIL, 0, encoded, prefix.length + quoted.length, DETAIL.length);
+            return encoded;
+        }
+    }
+
+    /**
+     * 编码后的时间戳
+     */
+    private record Timestamp(Instant instant, byte[] json) {
+    }
+
+    /**
+     * 可复用的字节缓冲区，非线程安全
+     */
+    private static final class Buffer extends OutputStream {
+
+        private static final int INITIAL_CAPACITY = 512;
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(minCapacity, bytes.length << 1));
+            }
+        }
+
+        void reset() {
+            count = 0;
+            if (bytes.length > MAX_RETAINED_BUFFER) {
+                bytes = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+}
@@ -13,6 +13,7 @@ public enum ErrorCode {
     INTERNAL_SERVER_ERROR(1001, HttpStatus.INTERNAL_SERVER_ERROR, "服务器内部错误"),
     RESOURCE_NOT_FOUND(1002, HttpStatus.NOT_FOUND, "未找到该资源"),
     REQUEST_VALIDATION_FAILED(1003, HttpStatus.BAD_REQUEST, "请求数据格式验证失败"),
+    TOO_MANY_REQUESTS(1004, HttpStatus.TOO_MANY_REQUESTS, "请求过于频繁，请稍后重试"),
     ;
 
     private final int code; // 错误码
@@ -5,8 +5,6 @@ import org.springframework.http.HttpStatus;
 
 import java.io.Serializable;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -19,6 +17,8 @@ import java.util.Map;
 @EqualsAndHashCode
 public class WebResp<E> implements Serializable {
 
+    private static volatile Instant lastTimestamp = Instant.EPOCH; // 最近一次生成的时间戳，同一毫秒内复用
+
     private int code; // 错误码
 
     private int status; // HTTP状态码
@@ -39,10 +39,9 @@ public class WebResp<E> implements Serializable {
      * @return 响应结果
      */
     public static <E> WebResp<E> success(String message, E data) {
-        ZonedDateTime nowInZone = Instant.now().atZone(ZoneId.of("Asia/Shanghai"));
         return new WebResp<>(
                 0, HttpStatus.OK.value(),
-                nowInZone.toInstant(),
+                now(),
                 message,
                 null,
                 data);
@@ -57,12 +56,27 @@ public class WebResp<E> implements Serializable {
      * @return 响应结果
      */
     public static <E> WebResp<E> failure(ErrorCode errorCode, Map<String, Object> detail) {
-        ZonedDateTime nowInZone = Instant.now().atZone(ZoneId.of("Asia/Shanghai"));
         return new WebResp<>(errorCode.getCode(), errorCode.getHttpStatus().value(),
-                nowInZone.toInstant(),
+                now(),
                 errorCode.getMessage(),
                 detail,
                 null);
     }
 
+    /**
+     * 毫秒精度的当前时间，同一毫秒内返回同一个 {@link Instant}
+     * <p>
+     * Instant 本身与时区无关，原来先转换为 Asia/Shanghai 时区再转换回 Instant 的结果不变；
+     * 复用同一个实例既省去了分配，也让序列化时可以复用编码好的时间戳（见 {@code WebRespHttpMessageConverter}）。
+     */
+    private static Instant now() {
+        long millis = System.currentTimeMillis();
+        Instant last = lastTimestamp;
+        if (last.toEpochMilli() != millis) {
+            last = Instant.ofEpochMilli(millis);
+            lastTimestamp = last;
+        }
+        return last;
+    }
+
 }
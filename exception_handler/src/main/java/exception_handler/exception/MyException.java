@@ -3,30 +3,87 @@ package exception_handler.exception;
 import exception_handler.entity.ErrorCode;
 import lombok.Getter;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * 自定义异常基类
+ * <p>
+ * 填充异常栈（fillInStackTrace）要遍历整个调用栈，Spring MVC 中一次请求的栈有上百帧，是抛出业务异常时最主要的开销。
+ * 开启无栈模式（默认开启，见 {@link #setStackless(boolean)}）后，4xx 等预期内的业务错误不记录异常栈，
+ * 5xx 错误始终保留完整的异常栈，便于排查。
+ * <p>
+ * 不需要错误详情时，可通过 {@link #cached(ErrorCode)} 抛出预先创建的实例，连对象都不用分配。
+ */
 @Getter
 public class MyException extends RuntimeException {
 
+    private static volatile boolean stackless = Boolean.parseBoolean(System.getProperty("exception.stackless", "true")); // 预期内的错误是否不记录异常栈
+
+    private static final Map<ErrorCode, MyException> CACHED = new EnumMap<>(ErrorCode.class); // 预先创建的无栈实例
+
+    static {
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            if (!errorCode.getHttpStatus().is5xxServerError()) {
+                CACHED.put(errorCode, new MyException(errorCode, Map.of(), false));
+            }
+        }
+    }
+
     private final ErrorCode errorCode; // 错误码
 
     private Map<String, Object> detail = new HashMap<>(); // 错误详情
 
     public MyException(ErrorCode errorCode) {
-        super(errorCode.getMessage());
+        super(errorCode.getMessage(), null, writableStackTrace(errorCode), writableStackTrace(errorCode));
         this.errorCode = errorCode;
     }
 
     public MyException(ErrorCode errorCode, Map<String, Object> detail) {
-        super(errorCode.getMessage());
+        super(errorCode.getMessage(), null, writableStackTrace(errorCode), writableStackTrace(errorCode));
         this.errorCode = errorCode;
         this.detail = detail;
     }
 
     public MyException(ErrorCode errorCode, Map<String, Object> detail, Throwable cause) {
-        super(errorCode.getMessage(), cause);
+        super(errorCode.getMessage(), cause, writableStackTrace(errorCode), writableStackTrace(errorCode));
+        this.errorCode = errorCode;
+        this.detail = detail;
+    }
+
+    private MyException(ErrorCode errorCode, Map<String, Object> detail, boolean writableStackTrace) {
+        super(errorCode.getMessage(), null, writableStackTrace, writableStackTrace);
         this.errorCode = errorCode;
         this.detail = detail;
     }
+
+    /**
+     * 获取预先创建的无栈异常，可被多个线程同时抛出（没有异常栈、不记录被抑制的异常，详情不可修改）
+     * @param errorCode 错误码
+     * @return 4xx 等预期内的错误返回共享实例；5xx 错误返回带完整异常栈的新实例
+     */
+    public static MyException cached(ErrorCode errorCode) {
+        MyException cached = CACHED.get(errorCode);
+        return cached != null ? cached : new MyException(errorCode);
+    }
+
+    /**
+     * 设置无栈模式，默认取系统属性 exception.stackless；Spring 应用由 {@link StacklessExceptionConfig} 在启动时设置一次
+     * @param enabled true 预期内的错误不记录异常栈；false 所有错误都记录完整的异常栈
+     */
+    public static void setStackless(boolean enabled) {
+        stackless = enabled;
+    }
+
+    public static boolean isStackless() {
+        return stackless;
+    }
+
+    /**
+     * 是否记录异常栈：未开启无栈模式，或 5xx 错误
+     */
+    private static boolean writableStackTrace(ErrorCode errorCode) {
+        return !stackless || errorCode.getHttpStatus().is5xxServerError();
+    }
 }
@@ -0,0 +1,31 @@
+package exception_handler.exception;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 启动时把 {@code exception.stackless} 绑定到 {@link MyException#setStackless(boolean)}，整个应用只设置这一次
+ * <p>
+ * 取值以 Spring Environment 为准，优先级与其他配置项相同：命令行参数 > 系统属性 {@code -Dexception.stackless}
+ * > 环境变量 {@code EXCEPTION_STACKLESS} > application.yml，都未设置时默认开启。
+ * 不在 Spring 中运行时（如基准测试），{@link MyException} 只读取系统属性。
+ */
+@Slf4j
+@Configuration
+public class StacklessExceptionConfig implements InitializingBean {
+
+    private final boolean stackless; // 预期内的业务错误是否使用无栈异常
+
+    public StacklessExceptionConfig(@Value("${exception.stackless:true}") boolean stackless) {
+        this.stackless = stackless;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        MyException.setStackless(stackless);
+        log.info("stackless business exceptions {}", stackless ? "enabled" : "disabled");
+    }
+
+}
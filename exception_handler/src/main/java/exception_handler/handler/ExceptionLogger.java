@@ -0,0 +1,261 @@
+package exception_handler.handler;
+
+import exception_handler.entity.ErrorCode;
+import exception_handler.exception.MyException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步、去重的异常日志
+ * <p>
+ * 故障期间每个失败请求都同步写一条带完整异常栈的 ERROR 日志，日志 I/O 会在服务最吃力的时候成为瓶颈。这里：
+ * <ul>
+ *     <li>按 ErrorCode（非自定义异常为异常类）、URI 模板（如 /user/{id}）与栈顶若干帧计算异常指纹；</li>
+ *     <li>每个指纹第一次出现时完整记录（第一条被丢弃时不登记指纹，下次出现时重新尝试），之后只计数，由后台线程每隔一个汇总周期输出一行带次数的汇总，
+ *     一个周期内没有再出现的指纹被移除，再次出现时重新完整记录；</li>
+ *     <li>请求线程只把日志放入有界队列，从不阻塞：队列超过 3/4 时丢弃 4xx 等预期内错误的日志，队列满时丢弃所有日志，
+ *     丢弃的条数同样出现在汇总中；</li>
+ *     <li>跟踪的指纹数有上限，超过后新指纹只计入汇总中的"未跟踪"条数。</li>
+ * </ul>
+ * 无论错误率多高，日志量与处理器的耗时都有上限。
+ */
+@Slf4j
+@Component
+public class ExceptionLogger implements AutoCloseable {
+
+    private final BlockingQueue<Entry> queue; // 待写出的日志
+
+    private final int lowPriorityLimit; // 队列长度达到该值后丢弃低优先级日志
+
+    private final long summaryIntervalNanos; // 汇总周期
+
+    private final int maxFingerprints; // 最多跟踪的指纹数
+
+    private final int stackFrames; // 指纹包含的栈顶帧数
+
+    private final Map<Fingerprint, Occurrence> occurrences = new ConcurrentHashMap<>(); // 指纹 → 出现次数
+
+    private final LongAdder dropped = new LongAdder(); // 因队列已满丢弃的日志数
+
+    private final LongAdder untracked = new LongAdder(); // 因指纹数已达上限而未跟踪的异常数
+
+    private final Thread writer; // 写日志与汇总的后台线程
+
+    private volatile boolean running = true;
+
+    /**
+     * 构造函数
+     *
+     * @param queueCapacity 日志队列容量
+     * @param summaryInterval 汇总周期
+     * @param maxFingerprints 最多跟踪的指纹数
+     * @param stackFrames 指纹包含的栈顶帧数
+     */
+    @Autowired
+    public ExceptionLogger(@Value("${exception.log.queue-capacity:1024}") int queueCapacity,
+                           @Value("${exception.log.summary-interval:10s}") Duration summaryInterval,
+                           @Value("${exception.log.max-fingerprints:10000}") int maxFingerprints,
+                           @Value("${exception.log.stack-frames:3}") int stackFrames) {
+        this(queueCapacity, summaryInterval, maxFingerprints, stackFrames, true);
+    }
+
+    /**
+     * 构造函数，测试时可不启动后台线程，使日志留在队列中
+     *
+     * @param startWriter 是否启动写日志的后台线程
+     */
+    ExceptionLogger(int queueCapacity, Duration summaryInterval, int maxFingerprints, int stackFrames, boolean startWriter) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.lowPriorityLimit = Math.max(1, queueCapacity * 3 / 4);
+        this.summaryIntervalNanos = summaryInterval.toNanos();
+        this.maxFingerprints = maxFingerprints;
+        this.stackFrames = stackFrames;
+        this.writer = new Thread(this::run, "exception-logger");
+        this.writer.setDaemon(true);
+        if (startWriter) {
+            this.writer.start();
+        }
+    }
+
+    /**
+     * 记录处理器捕获的异常，不阻塞
+     *
+     * @param request 请求
+     * @param errorCode 返回给客户端的错误码
+     * @param e 异常
+     * @param detail 异常详情，可为 null
+     */
+    public void log(HttpServletRequest request, ErrorCode errorCode, Exception e, Map<String, Object> detail) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String route = pattern != null ? pattern.toString() : request.getRequestURI();
+        Fingerprint fingerprint = new Fingerprint(e instanceof MyException ? errorCode : e.getClass(), route, topFrames(e));
+
+        Occurrence occurrence = occurrences.get(fingerprint);
+        if (occurrence != null) {
+            occurrence.count.increment();
+            return;
+        }
+        if (occurrences.size() >= maxFingerprints) {
+            untracked.increment();
+            return;
+        }
+        Occurrence first = new Occurrence(errorCode, e);
+        occurrence = occurrences.putIfAbsent(fingerprint, first);
+        if (occurrence != null) {
+            occurrence.count.increment(); // 其他线程同时记录了同一个指纹
+            return;
+        }
+
+        boolean serverError = errorCode.getHttpStatus().is5xxServerError();
+        int limit = serverError ? Integer.MAX_VALUE : lowPriorityLimit;
+        if (queue.size() >= limit || !queue.offer(new Entry(request.getRequestURI(), e, detail, serverError))) {
+            // 第一条完整日志没能写出，撤销指纹，下次出现时重新完整记录；期间其他线程计入的次数一并记为丢弃
+            occurrences.remove(fingerprint, first);
+            dropped.add(1 + first.count.sum());
+        }
+    }
+
+    /**
+     * @return 当前跟踪的指纹数
+     */
+    public int getFingerprintCount() {
+        return occurrences.size();
+    }
+
+    /**
+     * @return 因队列已满丢弃的日志数（自上次汇总）
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 停止后台线程，写出队列中剩余的日志与最后一次汇总
+     */
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 不再等待剩余日志写出，保留中断状态
+        }
+    }
+
+    private List<StackTraceElement> topFrames(Throwable e) {
+        StackTraceElement[] stackTrace = e.getStackTrace(); // 无栈异常为空数组
+        return List.of(Arrays.copyOf(stackTrace, Math.min(stackFrames, stackTrace.length)));
+    }
+
+    private void run() {
+        long nextSummary = System.nanoTime() + summaryIntervalNanos;
+        while (running) {
+            try {
+                Entry entry = queue.poll(Math.max(0, nextSummary - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (entry != null) {
+                    write(entry);
+                }
+            } catch (InterruptedException e) {
+                break; // close() 触发
+            } catch (RuntimeException e) {
+                log.warn("Failed to write exception log: {}", e.toString());
+            }
+            if (System.nanoTime() - nextSummary >= 0) {
+                summarize();
+                nextSummary = System.nanoTime() + summaryIntervalNanos;
+            }
+        }
+        for (Entry entry; (entry = queue.poll()) != null; ) {
+            write(entry);
+        }
+        summarize();
+    }
+
+    private void write(Entry entry) {
+        if (entry.e instanceof MyException) {
+            if (entry.serverError) {
+                log.error("\u001B[31m请求：\u001B[34m{}\u001B[31m 发生自定义异常，异常信息：\u001B[0m{}\n详细信息：{}",
+                        entry.uri, entry.e.getMessage(), entry.detail, entry.e);
+            } else {
+                log.warn("\u001B[33m请求：\u001B[34m{}\u001B[33m 发生自定义异常，异常信息：\u001B[0m{}\n详细信息：{}",
+                        entry.uri, entry.e.getMessage(), entry.detail);
+            }
+        } else {
+            log.error("\u001B[31m请求：\u001B[34m{}\u001B[31m 发生全局异常，详细信息：\u001B[0m", entry.uri, entry.e);
+        }
+    }
+
+    /**
+     * 输出本周期内重复出现的异常次数，并移除本周期内没有出现的指纹
+     */
+    private void summarize() {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(summaryIntervalNanos);
+        for (Map.Entry<Fingerprint, Occurrence> entry : occurrences.entrySet()) {
+            Occurrence occurrence = entry.getValue();
+            long count = occurrence.count.sumThenReset();
+            if (count == 0) {
+                occurrences.remove(entry.getKey(), occurrence);
+            } else {
+                log.warn("请求：{} 的异常 {}（{}）在 {}s 内又出现 {} 次", entry.getKey().route, occurrence.exception,
+                        occurrence.errorCode, seconds, count);
+            }
+        }
+        long droppedCount = dropped.sumThenReset();
+        long untrackedCount = untracked.sumThenReset();
+        if (droppedCount > 0 || untrackedCount > 0) {
+            log.warn("{}s 内因日志队列已满丢弃 {} 条异常日志，因指纹数超过 {} 未跟踪 {} 个异常",
+                    seconds, droppedCount, maxFingerprints, untrackedCount);
+        }
+    }
+
+    /**
+     * 异常指纹
+     *
+     * @param type 自定义异常为 ErrorCode，其他异常为异常类
+     * @param route URI 模板，没有匹配的接口时为请求 URI
+     * @param frames 栈顶若干帧，无栈异常为空
+     */
+    private record Fingerprint(Object type, String route, List<StackTraceElement> frames) {
+    }
+
+    /**
+     * 一个指纹的出现次数
+     */
+    private static final class Occurrence {
+
+        private final ErrorCode errorCode;
+
+        private final String exception; // 异常类与信息，用于汇总
+
+        private final LongAdder count = new LongAdder(); // 本周期内第一次之后又出现的次数
+
+        Occurrence(ErrorCode errorCode, Exception e) {
+            this.errorCode = errorCode;
+            this.exception = e.toString();
+        }
+    }
+
+    /**
+     * 一条待写出的完整日志
+     *
+     * @param serverError 是否为 5xx 错误，5xx 错误的日志优先级更高
+     */
+    private record Entry(String uri, Exception e, Map<String, Object> detail, boolean serverError) {
+    }
+
+}
@@ -3,8 +3,8 @@ package exception_handler.handler;
 import exception_handler.entity.ErrorCode;
 import exception_handler.entity.WebResp;
 import exception_handler.exception.MyException;
+import exception_handler.metrics.ErrorMetrics;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -12,9 +12,23 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 @RestControllerAdvice
 @ResponseBody
-@Slf4j
 public class GlobalExceptionHandler {
 
+    private final ExceptionLogger exceptionLogger; // 异步、去重的异常日志
+
+    private final ErrorMetrics errorMetrics; // 按错误码、异常类、URI 模板统计的指标
+
+    /**
+     * 构造函数
+     *
+     * @param exceptionLogger 异常日志
+     * @param errorMetrics 异常指标
+     */
+    public GlobalExceptionHandler(ExceptionLogger exceptionLogger, ErrorMetrics errorMetrics) {
+        this.exceptionLogger = exceptionLogger;
+        this.errorMetrics = errorMetrics;
+    }
+
     /**
      * 处理全局异常
      *
@@ -23,8 +37,11 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(Exception.class)
     public WebResp<?> handleException(Exception e, HttpServletRequest request) {
-        log.error("\u001B[31m请求：\u001B[34m{}\u001B[31m 发生全局异常，详细信息：\u001B[0m", request.getRequestURI(), e.fillInStackTrace());
-        return WebResp.failure(ErrorCode.INTERNAL_SERVER_ERROR, null);
+        long start = System.nanoTime();
+        exceptionLogger.log(request, ErrorCode.INTERNAL_SERVER_ERROR, e, null);
+        WebResp<?> resp = WebResp.failure(ErrorCode.INTERNAL_SERVER_ERROR, null);
+        errorMetrics.record(request, ErrorCode.INTERNAL_SERVER_ERROR, e, System.nanoTime() - start);
+        return resp;
     }
 
     /**
@@ -35,9 +52,11 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(MyException.class)
     public WebResp<?> handleMyException(MyException e, HttpServletRequest request) {
-        log.error("\u001B[31m请求：\u001B[34m{}\u001B[31m 发生自定义异常，异常信息：\u001B[0m{}\n详细信息：{}",
-                request.getRequestURI(), e.getMessage(), e.getDetail(), e.fillInStackTrace());
-        return WebResp.failure(e.getErrorCode(), e.getDetail());
+        long start = System.nanoTime();
+        exceptionLogger.log(request, e.getErrorCode(), e, e.getDetail()); // 直接使用抛出时的异常栈，不再重新填充
+        WebResp<?> resp = WebResp.failure(e.getErrorCode(), e.getDetail());
+        errorMetrics.record(request, e.getErrorCode(), e, System.nanoTime() - start);
+        return resp;
     }
 
 }
@@ -0,0 +1,145 @@
+package exception_handler.metrics;
+
+import exception_handler.entity.ErrorCode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import rate_limit.metrics.LatencyHistogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异常处理的指标，通过 Micrometer 导出（Actuator：/actuator/metrics/exception_handler.errors）
+ * <ul>
+ *     <li>{@code exception_handler.errors{error_code, exception, uri}}：按错误码、异常类（全限定名）、URI 模板分别计数；</li>
+ *     <li>{@code exception_handler.handle{error_code}}：异常处理器的耗时，另有
+ *     {@code exception_handler.handle.percentile{percentile=0.5|0.99|0.999}} 与 {@code exception_handler.handle.max}，单位秒。</li>
+ * </ul>
+ * 只在异常处理器中记录，成功的请求没有任何开销。计数器是 {@link LongAdder}（分段计数），耗时记录在 rate_limit 模块的
+ * {@link LatencyHistogram} 中，都是无锁的；与 {@code MicrometerRateLimiterMetrics} 一样，所有指标都是函数式的，只在采集时读取。
+ * 新的错误码/异常类/URI 组合第一次出现时注册一次，组合数超过上限后 uri 标签记为 OTHER，避免标签基数失控。
+ */
+@Component
+public class ErrorMetrics implements MeterBinder {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private static final String OTHER = "OTHER"; // 超过上限后的 uri 标签
+
+    private final int maxSeries; // 最多的错误码/异常类/URI 组合数
+
+    private final Map<Key, LongAdder> errors = new ConcurrentHashMap<>(); // 组合 → 次数
+
+    private final Map<ErrorCode, LatencyHistogram> handleTimes = new EnumMap<>(ErrorCode.class); // 错误码 → 处理耗时，启动后只读
+
+    private volatile MeterRegistry registry; // 绑定后新的组合直接注册
+
+    /**
+     * 构造函数
+     *
+     * @param maxSeries 最多的错误码/异常类/URI 组合数
+     */
+    public ErrorMetrics(@Value("${exception.metrics.max-series:1000}") int maxSeries) {
+        this.maxSeries = maxSeries;
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            handleTimes.put(errorCode, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * 记录一次异常
+     *
+     * @param request 请求
+     * @param errorCode 返回给客户端的错误码
+     * @param e 异常
+     * @param handleNanos 异常处理器的耗时
+     */
+    public void record(HttpServletRequest request, ErrorCode errorCode, Exception e, long handleNanos) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String exception = e.getClass().getName();
+        Key key = new Key(errorCode, exception, pattern != null ? pattern.toString() : OTHER);
+        LongAdder counter = errors.get(key);
+        if (counter == null) {
+            counter = counterOf(errors.size() < maxSeries ? key : new Key(errorCode, exception, OTHER));
+        }
+        counter.increment();
+        handleTimes.get(errorCode).record(handleNanos);
+    }
+
+    /**
+     * @param errorCode 错误码
+     * @return 该错误码的总次数
+     */
+    public long getErrorCount(ErrorCode errorCode) {
+        long count = 0;
+        for (Map.Entry<Key, LongAdder> entry : errors.entrySet()) {
+            if (entry.getKey().errorCode == errorCode) {
+                count += entry.getValue().sum();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        errors.forEach((key, counter) -> register(registry, key, counter));
+
+        handleTimes.forEach((errorCode, histogram) -> {
+            String errorCodeTag = errorCode.name();
+            FunctionTimer.builder("exception_handler.handle", histogram, LatencyHistogram::getCount, LatencyHistogram::getTotal, TimeUnit.NANOSECONDS)
+                    .tag("error_code", errorCodeTag).description("Time spent in the global exception handler").register(registry);
+            for (double percentile : PERCENTILES) {
+                Gauge.builder("exception_handler.handle.percentile", histogram, h -> h.valueAtPercentile(percentile * 100) / 1e9)
+                        .tag("error_code", errorCodeTag).tag("percentile", String.valueOf(percentile)).baseUnit("seconds").register(registry);
+            }
+            Gauge.builder("exception_handler.handle.max", histogram, h -> h.getMax() / 1e9)
+                    .tag("error_code", errorCodeTag).baseUnit("seconds").register(registry);
+        });
+    }
+
+    /**
+     * 组合第一次出现时创建计数器，已绑定时同时注册
+     */
+    private LongAdder counterOf(Key key) {
+        LongAdder created = new LongAdder();
+        LongAdder counter = errors.putIfAbsent(key, created);
+        if (counter != null) {
+            return counter;
+        }
+        MeterRegistry registry = this.registry;
+        if (registry != null) {
+            register(registry, key, created);
+        }
+        return created;
+    }
+
+    private static void register(MeterRegistry registry, Key key, LongAdder counter) {
+        FunctionCounter.builder("exception_handler.errors", counter, LongAdder::sum)
+                .tag("error_code", key.errorCode.name())
+                .tag("exception", key.exception)
+                .tag("uri", key.uri)
+                .description("Exceptions handled by the global exception handler")
+                .register(registry);
+    }
+
+    /**
+     * 一个错误码/异常类/URI 组合，与 Micrometer 的标签一一对应
+     *
+     * @param exception 异常类的全限定名：简单类名会让同名的异常类（以及所有匿名类）共用一个指标，后注册的计数丢失
+     * @param uri URI 模板，没有匹配的接口或组合数超过上限时为 OTHER
+     */
+    private record Key(ErrorCode errorCode, String exception, String uri) {
+    }
+
+}
@@ -0,0 +1,156 @@
+package exception_handler.ratelimit;
+
+import exception_handler.converter.WebRespHttpMessageConverter;
+import exception_handler.entity.ErrorCode;
+import exception_handler.entity.WebResp;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import rate_limit.KeyedRateLimiter;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RateLimited} 的拦截器
+ * <p>
+ * 容器刷新完成后扫描所有接口，为每个标注了 {@link RateLimited} 的接口创建一个 {@link KeyedRateLimiter}（按客户端分别计数），
+ * 请求时只需一次以 {@link Method} 为 key 的查表，未标注的接口不做任何处理。
+ * <p>
+ * 被限流时不经过 throw → {@code GlobalExceptionHandler} 的路径：不创建异常、不填充栈，
+ * 直接由 {@link WebRespHttpMessageConverter} 写出 429 响应体（code/status/message 已预先编码，只拼接当前时间戳），
+ * 并在 {@code Retry-After} 中给出需要等待的秒数。负载越高被拒绝的请求越多，拒绝的代价因此要尽可能低。
+ * <p>
+ * 客户端默认按 {@link HttpServletRequest#getRemoteAddr()} 区分。{@link RateLimited#clientHeader()} 只在请求来自
+ * {@code exception.rate-limit.trusted-proxies} 中的地址（如网关、反向代理）时才采用：客户端可以随意伪造请求头，
+ * 每次换一个值就能绕过限流，只有由可信代理覆盖写入的请求头才能作为客户端标识。
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor, ApplicationListener<ContextRefreshedEvent> {
+
+    private static final String[] RETRY_AFTER_SECONDS = new String[61]; // 常用的 Retry-After 取值，避免每次拒绝都格式化
+
+    static {
+        for (int i = 0; i < RETRY_AFTER_SECONDS.length; i++) {
+            RETRY_AFTER_SECONDS[i] = String.valueOf(i);
+        }
+    }
+
+    private final WebRespHttpMessageConverter webRespHttpMessageConverter; // 写出 429 响应体
+
+    private final Set<String> trustedProxies; // 可信代理的地址，只有来自这些地址的请求才采用 clientHeader
+
+    private volatile Map<Method, Rule> rules = Map.of(); // 接口方法 → 限流规则，启动后只读
+
+    /**
+     * 构造函数
+     *
+     * @param webRespHttpMessageConverter 响应体的序列化
+     * @param trustedProxies 可信代理的地址，逗号分隔，默认为空（始终按客户端 IP 限流）
+     */
+    public RateLimitInterceptor(WebRespHttpMessageConverter webRespHttpMessageConverter,
+                                @Value("${exception.rate-limit.trusted-proxies:}") String[] trustedProxies) {
+        this.webRespHttpMessageConverter = webRespHttpMessageConverter;
+        this.trustedProxies = Set.of(trustedProxies);
+    }
+
+    /**
+     * 解析所有接口上的 {@link RateLimited}，方法上的注解优先于类上的注解
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        Map<Method, Rule> resolved = new HashMap<>(rules);
+        for (RequestMappingHandlerMapping mapping : event.getApplicationContext().getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+            for (HandlerMethod handlerMethod : mapping.getHandlerMethods().values()) {
+                RateLimited rateLimited = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RateLimited.class);
+                if (rateLimited == null) {
+                    rateLimited = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RateLimited.class);
+                }
+                if (rateLimited != null && !resolved.containsKey(handlerMethod.getMethod())) {
+                    resolved.put(handlerMethod.getMethod(), Rule.of(rateLimited));
+                    log.info("Rate limiting {} with {}", handlerMethod.getShortLogMessage(), rateLimited);
+                    if (!rateLimited.clientHeader().isEmpty() && trustedProxies.isEmpty()) {
+                        log.warn("{} is ignored for {}: no exception.rate-limit.trusted-proxies configured",
+                                rateLimited.clientHeader(), handlerMethod.getShortLogMessage());
+                    }
+                }
+            }
+        }
+        rules = Map.copyOf(resolved);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Rule rule = rules.get(handlerMethod.getMethod());
+        if (rule == null) {
+            return true;
+        }
+        long retryAfterNanos = rule.limiter.tryAcquireOrRetryAfter(clientOf(rule, request), 1);
+        if (retryAfterNanos == 0) {
+            return true;
+        }
+
+        response.setStatus(ErrorCode.TOO_MANY_REQUESTS.getHttpStatus().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter(retryAfterNanos));
+        webRespHttpMessageConverter.write(WebResp.failure(ErrorCode.TOO_MANY_REQUESTS, null), MediaType.APPLICATION_JSON,
+                new ServletServerHttpResponse(response));
+        return false;
+    }
+
+    /**
+     * 客户端标识：请求来自可信代理且带有 clientHeader 时取请求头，否则取客户端 IP
+     */
+    private String clientOf(Rule rule, HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (rule.clientHeader != null && trustedProxies.contains(remoteAddr)) {
+            String client = request.getHeader(rule.clientHeader);
+            if (client != null) {
+                return client;
+            }
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * Retry-After 的秒数，向上取整，至少为 1
+     */
+    private static String retryAfter(long nanos) {
+        long seconds = Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        return seconds < RETRY_AFTER_SECONDS.length ? RETRY_AFTER_SECONDS[(int) seconds] : String.valueOf(seconds);
+    }
+
+    /**
+     * 一个接口的限流规则
+     * @param limiter 按客户端分别计数的限流器
+     * @param clientHeader 可信代理写入的标识客户端的请求头，为 null 时使用客户端 IP
+     */
+    private record Rule(KeyedRateLimiter limiter, String clientHeader) {
+
+        static Rule of(RateLimited rateLimited) {
+            Duration refillInterval = Duration.ofNanos(rateLimited.unit().toNanos(rateLimited.refillInterval()));
+            return new Rule(new KeyedRateLimiter(rateLimited.capacity(), refillInterval, rateLimited.maxClients()),
+                    rateLimited.clientHeader().isEmpty() ? null : rateLimited.clientHeader());
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package exception_handler.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口限流：每个被标注的接口（标注在类上时为类中的每个接口）按客户端各自一个令牌桶
+ * <p>
+ * 启动时由 {@link RateLimitInterceptor} 解析一次，被限流的请求直接返回 429 与 {@code Retry-After}，不抛出异常。
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimited {
+
+    /**
+     * @return 令牌桶容量，即每个客户端允许的突发请求数
+     */
+    int capacity();
+
+    /**
+     * @return 每个令牌的生成间隔，单位见 {@link #unit()}
+     */
+    long refillInterval();
+
+    /**
+     * @return 生成间隔的时间单位
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * @return 标识客户端的请求头，如 X-API-Key；只在请求来自 {@code exception.rate-limit.trusted-proxies} 中的可信代理时采用，
+     * 由代理负责覆盖客户端自带的同名请求头。为空、请求不是来自可信代理或没有该请求头时使用客户端 IP
+     */
+    String clientHeader() default "";
+
+    /**
+     * @return 最多同时跟踪的客户端数，决定内存上限
+     */
+    int maxClients() default 10_000;
+
+}
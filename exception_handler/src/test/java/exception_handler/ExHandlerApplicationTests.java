@@ -1,12 +1,23 @@
 package exception_handler;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import exception_handler.converter.WebRespHttpMessageConverter;
+import exception_handler.entity.ErrorCode;
+import exception_handler.entity.WebResp;
+import exception_handler.metrics.ErrorMetrics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -17,6 +28,15 @@ public class ExHandlerApplicationTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WebRespHttpMessageConverter webRespHttpMessageConverter;
+
+    @Autowired
+    private ErrorMetrics errorMetrics;
+
     @Test
     void testSuccess() throws Exception {
         mockMvc.perform(get("/test/test").param("signal", "0"))
@@ -44,4 +64,47 @@ public class ExHandlerApplicationTests {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.code").value(1003));
     }
+
+    @Test
+    void testTooManyRequests() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/test/limited"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.code").value(0));
+        }
+        mockMvc.perform(get("/test/limited"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.code").value(1004))
+                .andExpect(jsonPath("$.status").value(429))
+                .andExpect(jsonPath("$.timestamp").isNotEmpty());
+    }
+
+    @Test
+    void testPreEncodedResponseMatchesObjectMapper() throws Exception {
+        WebResp<?> resp = WebResp.failure(ErrorCode.RESOURCE_NOT_FOUND, Map.of("请求异常", "请求资源不存在"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        webRespHttpMessageConverter.write(resp, out);
+        assertThat(out.toByteArray()).isEqualTo(objectMapper.writeValueAsBytes(resp));
+
+        mockMvc.perform(get("/test/test").param("signal", "1"))
+                .andExpect(header().exists("Content-Length")) // 由 WebRespHttpMessageConverter 写出
+                .andExpect(jsonPath("$.message").value(ErrorCode.RESOURCE_NOT_FOUND.getMessage()))
+                .andExpect(jsonPath("$.detail.请求异常").value("请求资源不存在"));
+    }
+
+    @Test
+    void testErrorMetrics() throws Exception {
+        long before = errorMetrics.getErrorCount(ErrorCode.RESOURCE_NOT_FOUND);
+        mockMvc.perform(get("/test/test").param("signal", "1"));
+        assertThat(errorMetrics.getErrorCount(ErrorCode.RESOURCE_NOT_FOUND)).isEqualTo(before + 1);
+
+        mockMvc.perform(get("/actuator/metrics/exception_handler.errors")
+                        .param("tag", "error_code:RESOURCE_NOT_FOUND")
+                        .param("tag", "uri:/test/test"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value((double) before + 1));
+        mockMvc.perform(get("/actuator/metrics/exception_handler.handle").param("tag", "error_code:RESOURCE_NOT_FOUND"))
+                .andExpect(status().isOk());
+    }
 }
@@ -0,0 +1,95 @@
+package exception_handler.handler;
+
+import exception_handler.entity.ErrorCode;
+import exception_handler.exception.MyException;
+import exception_handler.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExceptionLoggerTest {
+
+    private final ExceptionLogger exceptionLogger = new ExceptionLogger(16, Duration.ofHours(1), 3, 3);
+
+    @AfterEach
+    void tearDown() {
+        exceptionLogger.close();
+    }
+
+    @Test
+    void testRepeatsShareOneFingerprint() {
+        for (int i = 0; i < 100; i++) {
+            exceptionLogger.log(request("/user/" + i), ErrorCode.RESOURCE_NOT_FOUND,
+                    new ResourceNotFoundException(Map.of("id", i)), Map.of("id", i));
+        }
+        assertThat(exceptionLogger.getFingerprintCount()).isEqualTo(1); // 同一个 URI 模板
+    }
+
+    @Test
+    void testFingerprintsAreBounded() {
+        exceptionLogger.log(request("/a"), ErrorCode.RESOURCE_NOT_FOUND, MyException.cached(ErrorCode.RESOURCE_NOT_FOUND), null);
+        exceptionLogger.log(request("/a"), ErrorCode.REQUEST_VALIDATION_FAILED, MyException.cached(ErrorCode.REQUEST_VALIDATION_FAILED), null);
+        exceptionLogger.log(request("/b"), ErrorCode.INTERNAL_SERVER_ERROR, new IllegalStateException(), null);
+        exceptionLogger.log(request("/c"), ErrorCode.INTERNAL_SERVER_ERROR, new IllegalStateException(), null);
+        assertThat(exceptionLogger.getFingerprintCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testLowPriorityLogsAreDroppedFirst() {
+        // 不启动后台线程，日志留在队列中：容量 16，达到 12 条后丢弃 4xx
+        try (ExceptionLogger logger = new ExceptionLogger(16, Duration.ofHours(1), 100, 3, false)) {
+            for (int i = 0; i < 13; i++) {
+                logger.log(request("/a" + i), ErrorCode.RESOURCE_NOT_FOUND, MyException.cached(ErrorCode.RESOURCE_NOT_FOUND), null);
+            }
+            assertThat(logger.getDroppedCount()).isEqualTo(1);
+            assertThat(logger.getFingerprintCount()).isEqualTo(12); // 被丢弃的第一条不登记指纹
+
+            for (int i = 0; i < 5; i++) {
+                logger.log(request("/b" + i), ErrorCode.INTERNAL_SERVER_ERROR, new IllegalStateException(), null);
+            }
+            assertThat(logger.getDroppedCount()).isEqualTo(2); // 5xx 只在队列满时丢弃
+            assertThat(logger.getFingerprintCount()).isEqualTo(16);
+        }
+    }
+
+    @Test
+    void testDroppedFirstOccurrenceIsLoggedAgain() {
+        try (ExceptionLogger logger = new ExceptionLogger(1, Duration.ofHours(1), 100, 3, false)) {
+            logger.log(request("/a"), ErrorCode.INTERNAL_SERVER_ERROR, new IllegalStateException(), null);
+            logger.log(request("/b"), ErrorCode.INTERNAL_SERVER_ERROR, new IllegalStateException(), null);
+            logger.log(request("/b"), ErrorCode.INTERNAL_SERVER_ERROR, new IllegalStateException(), null);
+            assertThat(logger.getDroppedCount()).isEqualTo(2); // /b 没有登记指纹，第二次仍尝试完整记录
+            assertThat(logger.getFingerprintCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void testIdleFingerprintsAreEvictedBySummary() throws InterruptedException {
+        try (ExceptionLogger logger = new ExceptionLogger(16, Duration.ofMillis(50), 100, 3)) {
+            for (int i = 0; i < 10; i++) {
+                logger.log(request("/user/" + i), ErrorCode.RESOURCE_NOT_FOUND, MyException.cached(ErrorCode.RESOURCE_NOT_FOUND), null);
+            }
+            assertThat(logger.getFingerprintCount()).isEqualTo(1);
+            // 第一次汇总输出 9 次重复并清零，第二次汇总时该指纹没有再出现而被移除
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (logger.getFingerprintCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(logger.getFingerprintCount()).isZero();
+        }
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, uri.startsWith("/user/") ? "/user/{id}" : uri);
+        return request;
+    }
+
+}
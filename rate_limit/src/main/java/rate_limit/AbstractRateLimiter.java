@@ -0,0 +1,351 @@
+package rate_limit;
+
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.runtime.HashedWheelTimer;
+import rate_limit.runtime.RateLimiterRuntime;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内限流器的基类，实现等待许可的逻辑
+ * <p>
+ * 等待者按 FIFO 顺序排队，只有队首的等待者获取许可，后来的请求在队列不为空时不会插队：
+ * 非阻塞的 {@link #tryAcquire(int)} 在有等待者时直接拒绝，不会抢走队首正在等的许可。
+ * 队首获取不到许可时，根据 {@link #nanosUntilAvailable()} 在共享时间轮上登记一次唤醒，
+ * 到期后再次尝试，整个限流器同一时刻最多只有一个唤醒任务，等待者本身不占用线程。
+ * <p>
+ * 多个许可通过 {@link #tryAcquire(int)} 一次性获取，超过 {@link #maxPermits()} 的请求永远无法满足，直接拒绝。
+ * 异步接口的 Future 在 {@link ForkJoinPool#commonPool()} 中完成，回调不会在时间轮线程上执行。
+ * <p>
+ * 定时工作都登记在 {@link RateLimiterRuntime} 上，默认使用进程内共享的实例。
+ * <p>
+ * 子类只实现 {@link #tryAcquirePermits(int)}，放行与拒绝次数、等待时间由基类统一记入 {@link #getMetrics()}：
+ * 等待中的请求只在最终获取成功或超时时计一次，中途的重试不计入。
+ */
+public abstract class AbstractRateLimiter implements RateLimiter {
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>(); // 等待队列
+
+    private final AtomicInteger wip = new AtomicInteger(); // 保证同一时刻只有一个线程处理等待队列
+
+    private final AtomicBoolean wakeupScheduled = new AtomicBoolean(); // 是否已登记唤醒
+
+    private volatile HashedWheelTimer.Timeout wakeup; // 已登记的唤醒任务
+
+    private final RateLimiterRuntime runtime; // 唤醒等待者的定时服务
+
+    private final Executor completionExecutor; // 完成异步 Future 的线程池
+
+    private volatile boolean closed; // 是否已关闭
+
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram waitTime = metrics.histogram(RateLimiterMetrics.WAIT_TIME); // 等待者的等待时间
+
+    protected AbstractRateLimiter() {
+        this(RateLimiterRuntime.shared());
+    }
+
+    /**
+     * @param runtime 定时服务
+     */
+    protected AbstractRateLimiter(RateLimiterRuntime runtime) {
+        this(runtime, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param runtime 定时服务
+     * @param completionExecutor 完成异步 Future 的线程池
+     */
+    protected AbstractRateLimiter(RateLimiterRuntime runtime, Executor completionExecutor) {
+        this.runtime = runtime;
+        this.completionExecutor = completionExecutor;
+        metrics.gauge("waiters", waiters::size);
+    }
+
+    /**
+     * 限流器的指标，子类可在构造时登记自己的当前值类指标
+     * @return 指标
+     */
+    public RateLimiterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 限流器使用的定时服务，供子类登记自己的定时工作
+     * @return 定时服务
+     */
+    protected RateLimiterRuntime runtime() {
+        return runtime;
+    }
+
+    protected boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 尝试一次性获取多个许可，不记录指标；要么全部获取，要么一个都不获取
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    protected abstract boolean tryAcquirePermits(int permits);
+
+    /**
+     * 预计还需多久才有 permits 个许可可用，用于安排唤醒时间
+     * 只需给出估计值：偏早会多尝试一次，偏晚会增加等待者的延迟
+     * @param permits 许可数
+     * @return 纳秒数，0 表示当前即有足够的许可
+     */
+    protected abstract long nanosUntilAvailable(int permits);
+
+    /**
+     * 一次最多能获取的许可数，如令牌桶容量、窗口内的最大请求数
+     * @return 许可数
+     */
+    protected abstract int maxPermits();
+
+    /**
+     * 调整限流参数后调用：等待者按新的参数重新尝试，已登记的唤醒按新的速率重新计算
+     */
+    protected void signalWaiters() {
+        HashedWheelTimer.Timeout timeout = wakeup;
+        if (timeout != null && timeout.cancel()) {
+            wakeupScheduled.set(false);
+        }
+        drain();
+    }
+
+    /**
+     * 按新旧上限的比例换算已使用的许可数，向上取整，调整后不会多放行
+     * @param used 已使用的许可数
+     * @param oldLimit 原上限
+     * @param newLimit 新上限
+     * @return 换算后的许可数，不超过新上限
+     */
+    protected static int rescale(int used, int oldLimit, int newLimit) {
+        return (int) Math.min(newLimit, ((long) used * newLimit + oldLimit - 1) / oldLimit);
+    }
+
+    /**
+     * 校验许可数
+     * @param permits 许可数
+     */
+    protected static void checkPermits(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试一次性获取多个许可，有等待者排队时直接拒绝
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    @Override
+    public final boolean tryAcquire(int permits) {
+        checkPermits(permits);
+        if (!waiters.isEmpty()) {
+            drain(); // 先清理已超时或已取消的队首，并尽量让等待者先获取
+        }
+        return metrics.recordAcquire(waiters.isEmpty() && tryAcquirePermits(permits));
+    }
+
+    @Override
+    public boolean acquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        CompletableFuture<Void> future = enqueue(permits, unit.toNanos(timeout), false);
+        try {
+            future.get();
+            return true;
+        } catch (ExecutionException e) {
+            return false; // 超时
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        return enqueue(permits, Long.MAX_VALUE, true);
+    }
+
+    @Override
+    public CompletableFuture<Void> acquireAsync(int permits, long timeout, TimeUnit unit) {
+        return enqueue(permits, unit.toNanos(timeout), true);
+    }
+
+    /**
+     * 排队获取许可
+     * @param timeoutNanos 最长等待时间，Long.MAX_VALUE 表示不限
+     * @param async 是否在线程池中完成 Future
+     */
+    private CompletableFuture<Void> enqueue(int permits, long timeoutNanos, boolean async) {
+        checkPermits(permits);
+        if (closed) {
+            throw new IllegalStateException("rate limiter is closed");
+        }
+        if (permits > maxPermits()) {
+            throw new IllegalArgumentException("permits (" + permits + ") exceed the maximum of " + maxPermits());
+        }
+        // 快速路径：没有等待者时直接尝试，无需创建等待者
+        if (waiters.isEmpty()) {
+            if (tryAcquirePermits(permits)) {
+                metrics.recordAcquire(true);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (timeoutNanos <= 0) {
+                metrics.recordAcquire(false);
+                return CompletableFuture.failedFuture(new TimeoutException("no permit available"));
+            }
+        }
+
+        Waiter waiter = new Waiter(permits, async);
+        if (timeoutNanos != Long.MAX_VALUE) {
+            waiter.timeout = runtime.schedule(() -> expire(waiter), Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        }
+        waiters.add(waiter);
+        if (closed) {
+            cancelWaiters(); // 与 close 并发，不能让等待者留在队列中
+        }
+        drain();
+        return waiter.future;
+    }
+
+    /**
+     * 关闭限流器，仍在等待的请求以 {@link CancellationException} 结束；子类覆盖时需调用本方法
+     */
+    @Override
+    public void close() {
+        closed = true;
+        HashedWheelTimer.Timeout timeout = wakeup;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        cancelWaiters();
+    }
+
+    private void cancelWaiters() {
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.DONE)) {
+                if (waiter.timeout != null) {
+                    waiter.timeout.cancel();
+                }
+                complete(waiter, new CancellationException("rate limiter is closed"));
+            }
+        }
+    }
+
+    /**
+     * 按 FIFO 顺序为等待者获取许可，获取不到时登记唤醒
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return; // 由正在处理的线程再处理一轮
+        }
+        int missed = 1;
+        do {
+            Waiter head;
+            while ((head = waiters.peek()) != null) {
+                if (!head.isWaiting()) {
+                    waiters.poll(); // 已超时或已取消
+                    continue;
+                }
+                if (!tryAcquirePermits(head.permits)) {
+                    scheduleWakeup(head.permits);
+                    break;
+                }
+                waiters.poll();
+                // 获取许可的同时恰好超时或被取消时，许可不再归还
+                if (head.state.compareAndSet(Waiter.WAITING, Waiter.DONE)) {
+                    if (head.timeout != null) {
+                        head.timeout.cancel();
+                    }
+                    metrics.recordAcquire(true);
+                    metrics.recordLatency(waitTime, System.nanoTime() - head.enqueuedAt);
+                    complete(head, null);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void scheduleWakeup(int permits) {
+        if (!closed && wakeupScheduled.compareAndSet(false, true)) {
+            wakeup = runtime.schedule(() -> {
+                wakeupScheduled.set(false);
+                drain();
+            }, nanosUntilAvailable(permits), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void expire(Waiter waiter) {
+        if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.DONE)) {
+            metrics.recordAcquire(false);
+            complete(waiter, new TimeoutException("timed out waiting for " + waiter.permits + " permit(s)"));
+            drain(); // 队首超时后让后面的等待者继续
+        }
+    }
+
+    private void complete(Waiter waiter, Throwable error) {
+        if (!waiter.async) {
+            waiter.complete(error); // 同步等待者只需唤醒线程
+        } else {
+            completionExecutor.execute(() -> waiter.complete(error));
+        }
+    }
+
+    /**
+     * 等待者
+     */
+    private static final class Waiter {
+
+        static final int WAITING = 0, DONE = 1;
+
+        final int permits; // 需要的许可数
+
+        final boolean async; // 是否在线程池中完成 Future
+
+        final long enqueuedAt = System.nanoTime(); // 开始等待的时刻
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        HashedWheelTimer.Timeout timeout; // 超时任务
+
+        Waiter(int permits, boolean async) {
+            this.permits = permits;
+            this.async = async;
+        }
+
+        boolean isWaiting() {
+            return state.get() == WAITING && !future.isDone();
+        }
+
+        void complete(Throwable error) {
+            if (error == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+}
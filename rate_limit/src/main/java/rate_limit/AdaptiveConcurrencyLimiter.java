@@ -0,0 +1,276 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.adaptive.AimdLimit;
+import rate_limit.adaptive.GradientLimit;
+import rate_limit.adaptive.LimitAlgorithm;
+import rate_limit.adaptive.VegasLimit;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限流器
+ * <p>
+ * 其他限流器限制每秒请求数，速率需要人工调优，下游变慢时仍按原速率放行而被压垮，下游扩容后又过早拒绝。
+ * 本限流器限制的是同时处理中的请求数（in-flight），上限由 {@link LimitAlgorithm} 根据观测到的往返时间自动调整：
+ * 延迟上升说明下游开始排队，上限随之下降；延迟平稳则逐步调大，探测新的吞吐上限（Little 定律：吞吐 = 并发 / 延迟）。
+ * <p>
+ * 获取与释放都是无锁的：获取只 CAS 一个并发计数；释放时把延迟累加到当前采样窗口（{@link LongAdder} 与 CAS 取最小值），
+ * 窗口到期后由一个线程通过 CAS 换上新窗口，并单线程调用调整算法，其余线程不等待。
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final long DEFAULT_MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100); // 默认窗口最短 100 毫秒
+
+    private static final int DEFAULT_MIN_SAMPLES = 10; // 默认窗口至少包含 10 个样本
+
+    private final LimitAlgorithm algorithm; // 调整算法
+
+    private final long minWindowNanos; // 窗口最短时长
+
+    private final int minSamples; // 窗口最少样本数，没有请求被丢弃时样本不足不调整
+
+    private final AtomicInteger inflight = new AtomicInteger(); // 处理中的请求数
+
+    private final AtomicReference<Window> window; // 当前采样窗口
+
+    @Getter
+    private volatile int limit; // 当前的并发上限
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram rtt = metrics.histogram("rtt"); // 成功请求的往返时间
+
+    /**
+     * 构造函数，窗口至少 100 毫秒、10 个样本
+     * @param algorithm 调整算法，如 {@link AimdLimit}、{@link GradientLimit}、{@link VegasLimit}
+     */
+    public AdaptiveConcurrencyLimiter(LimitAlgorithm algorithm) {
+        this(algorithm, DEFAULT_MIN_WINDOW_NANOS, DEFAULT_MIN_SAMPLES);
+    }
+
+    /**
+     * 构造函数
+     * @param algorithm 调整算法
+     * @param minWindowNanos 采样窗口最短时长，纳秒
+     * @param minSamples 采样窗口最少样本数
+     */
+    public AdaptiveConcurrencyLimiter(LimitAlgorithm algorithm, long minWindowNanos, int minSamples) {
+        if (algorithm.initialLimit() <= 0) {
+            throw new IllegalArgumentException("initialLimit must be positive: " + algorithm.initialLimit());
+        }
+        this.algorithm = algorithm;
+        this.minWindowNanos = minWindowNanos;
+        this.minSamples = Math.max(1, minSamples);
+        this.limit = algorithm.initialLimit();
+        this.window = new AtomicReference<>(new Window(System.nanoTime()));
+        metrics.gauge("limit", () -> limit);
+        metrics.gauge("inflight", inflight::get);
+    }
+
+    /**
+     * 尝试获取并发许可
+     * @return 许可，处理结束后必须调用其中一个回调；null 表示并发已达上限，被限流
+     */
+    public Permit tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit) {
+                metrics.recordAcquire(false);
+                return null;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        metrics.recordAcquire(true);
+        return new Permit(System.nanoTime(), current + 1);
+    }
+
+    /**
+     * 处理中的请求数
+     * @return 请求数
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    private void release(Permit permit, long rttNanos, boolean dropped) {
+        inflight.decrementAndGet();
+        Window current = window.get();
+        if (rttNanos >= 0) {
+            current.record(rttNanos, permit.inflight);
+            metrics.recordLatency(rtt, rttNanos);
+        } else if (dropped) {
+            current.dropped = true;
+        }
+        if (current.isReady(System.nanoTime(), minWindowNanos, minSamples)
+                && window.compareAndSet(current, new Window(System.nanoTime()))) {
+            updateLimit(current); // 只有换上新窗口的线程执行
+        }
+    }
+
+    private void updateLimit(Window closed) {
+        long samples = closed.count.sum();
+        LimitAlgorithm.Sample sample = new LimitAlgorithm.Sample(
+                samples == 0 ? 0 : closed.rttSum.sum() / samples,
+                samples == 0 ? 0 : closed.minRtt.get(),
+                closed.maxInflight.get(),
+                (int) Math.min(Integer.MAX_VALUE, samples),
+                closed.dropped);
+        if (samples == 0 && !sample.dropped()) {
+            return;
+        }
+        int newLimit = Math.max(1, algorithm.update(limit, sample));
+        if (newLimit != limit) {
+            log.debug("Concurrency limit {} -> {}, {}", limit, newLimit, sample);
+            limit = newLimit;
+        }
+    }
+
+    /**
+     * 并发许可，每个许可只能调用一次回调
+     */
+    public final class Permit {
+
+        private final long startedAt; // 获取许可的时刻
+
+        private final int inflight; // 获取许可后的并发数
+
+        private final AtomicBoolean released = new AtomicBoolean(); // 是否已释放，超时与响应可能在不同线程同时回调
+
+        private Permit(long startedAt, int inflight) {
+            this.startedAt = startedAt;
+            this.inflight = inflight;
+        }
+
+        /**
+         * 请求成功，记录往返时间
+         */
+        public void onSuccess() {
+            if (markReleased()) {
+                release(this, System.nanoTime() - startedAt, false);
+            }
+        }
+
+        /**
+         * 请求超时或被下游拒绝，视为拥塞信号
+         */
+        public void onDropped() {
+            if (markReleased()) {
+                release(this, -1, true);
+            }
+        }
+
+        /**
+         * 请求失败但与下游负载无关（如参数校验失败），只释放许可，不参与调整
+         */
+        public void onIgnore() {
+            if (markReleased()) {
+                release(this, -1, false);
+            }
+        }
+
+        private boolean markReleased() {
+            return released.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * 采样窗口
+     */
+    private static final class Window {
+
+        final long startedAt; // 窗口开始时刻
+
+        final LongAdder rttSum = new LongAdder(); // 往返时间之和
+
+        final LongAdder count = new LongAdder(); // 样本数
+
+        final AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE); // 最小往返时间
+
+        final AtomicInteger maxInflight = new AtomicInteger(); // 最大并发数
+
+        volatile boolean dropped; // 是否有请求被丢弃
+
+        Window(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void record(long rttNanos, int inflight) {
+            rttSum.add(rttNanos);
+            count.increment();
+            long min;
+            while (rttNanos < (min = minRtt.get()) && !minRtt.compareAndSet(min, rttNanos)) {
+                // 其他线程已更新最小值，重新比较
+            }
+            int max;
+            while (inflight > (max = maxInflight.get()) && !maxInflight.compareAndSet(max, inflight)) {
+                // 其他线程已更新最大值，重新比较
+            }
+        }
+
+        boolean isReady(long now, long minWindowNanos, int minSamples) {
+            return now - startedAt >= minWindowNanos && (dropped || count.sum() >= minSamples);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new GradientLimit());
+        AtomicInteger capacity = new AtomicInteger(20); // 下游能同时处理的请求数，超过后开始排队
+        AtomicInteger downstream = new AtomicInteger(); // 下游处理中的请求数
+        LongAdder accepted = new LongAdder(), rejected = new LongAdder();
+
+        ExecutorService clients = Executors.newFixedThreadPool(200);
+        for (int i = 0; i < 200; i++) {
+            clients.execute(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Permit permit = limiter.tryAcquire();
+                    if (permit == null) {
+                        rejected.increment();
+                        sleep(1_000_000);
+                        continue;
+                    }
+                    accepted.increment();
+                    // 模拟下游：基础延迟 10 毫秒，并发超过容量后开始排队，延迟按比例增加
+                    int load = downstream.incrementAndGet();
+                    sleep((long) (10_000_000 * Math.max(1.0, (double) load / capacity.get())) + ThreadLocalRandom.current().nextInt(500_000));
+                    downstream.decrementAndGet();
+                    permit.onSuccess();
+                }
+            });
+        }
+
+        for (int second = 1; second <= 9; second++) {
+            if (second == 4) {
+                capacity.set(60); // 下游扩容
+            } else if (second == 7) {
+                capacity.set(10); // 下游变慢
+            }
+            Thread.sleep(1000);
+            log.info("第 {} 秒：下游容量 {}，并发上限 {}，放行 {}，拒绝 {}", second, capacity.get(), limiter.getLimit(),
+                    accepted.sumThenReset(), rejected.sumThenReset());
+        }
+        clients.shutdownNow();
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
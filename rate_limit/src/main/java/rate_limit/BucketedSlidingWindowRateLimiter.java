@@ -0,0 +1,224 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.redis.RedisScript;
+import rate_limit.resilience.GlobalRateLimiter;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 基于 Redis 的分桶滑动窗口限流器（滑动窗口计数器）
+ * <p>
+ * {@link SlidingWindowRateLimiter} 为每个放行的请求写入一个 ZSET 成员，内存与清理过期成员的 CPU 都与窗口内的请求数成正比，
+ * 每个窗口上万次请求时代价过高。本限流器与 {@link LocalSlidingWindowRateLimiter} 算法相同，
+ * 每个 key 只保存一个 HASH：字段为子窗口编号，值为该子窗口的请求数：
+ * <ul>
+ *     <li>放行时 HINCRBY 当前子窗口，并把过期时间刷新为一个窗口加一个子窗口，空闲的 key 自动删除；</li>
+ *     <li>统计当前子窗口与之前 subWindows - 1 个子窗口的请求数，即将滑出窗口的最早子窗口按仍在窗口内的时间比例折算；</li>
+ *     <li>滑出窗口的子窗口在下次请求时 HDEL，HASH 最多 subWindows + 1 个字段，内存为常数，
+ *     字段较少时 Redis 以紧凑的 listpack 编码保存。</li>
+ * </ul>
+ * 统计与写入在一个 Lua 脚本中原子完成，使用 Redis 服务端时间；脚本的开销只与子窗口数有关，与限流阈值无关。
+ * 代价是精度：假设最早子窗口内的请求均匀分布，子窗口越多误差越小。
+ * <p>
+ * 窗口大小变化后子窗口编号不再对应，已有计数作废，最多多放行一个窗口的请求；只调整最大请求数时计数保留。
+ */
+@Slf4j
+public class BucketedSlidingWindowRateLimiter implements GlobalRateLimiter, Reconfigurable {
+
+    /**
+     * 分桶滑动窗口限流脚本
+     * <p>
+     * KEYS[1]：限流 key（HASH）；
+     * ARGV[1]：最大许可数；ARGV[2]：窗口大小（毫秒）；ARGV[3]：子窗口大小（毫秒）；ARGV[4]：子窗口数；ARGV[5]：许可数。
+     * 放行时返回 1，被限流时返回 0。
+     * 编号不在 [当前子窗口 - 子窗口数, 当前子窗口] 内的字段已滑出窗口（或属于调整前的窗口大小），一并删除。
+     */
+    static final RedisScript ACQUIRE_SCRIPT = new RedisScript("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local size = tonumber(ARGV[3])
+            local current = math.floor(now / size)
+            local oldest = current - tonumber(ARGV[4])
+            local remaining = size - (now - current * size)
+            local used = 0
+            local expired = {}
+            local counts = redis.call('HGETALL', KEYS[1])
+            for i = 1, #counts, 2 do
+                local id = tonumber(counts[i])
+                if id > oldest and id <= current then
+                    used = used + tonumber(counts[i + 1])
+                elseif id == oldest then
+                    used = used + math.floor(tonumber(counts[i + 1]) * remaining / size)
+                else
+                    expired[#expired + 1] = counts[i]
+                end
+            end
+            if #expired > 0 then
+                redis.call('HDEL', KEYS[1], unpack(expired))
+            end
+            local permits = tonumber(ARGV[5])
+            if used + permits > tonumber(ARGV[1]) then
+                return 0
+            end
+            redis.call('HINCRBY', KEYS[1], string.format('%d', current), permits)
+            redis.call('PEXPIRE', KEYS[1], tonumber(ARGV[2]) + size)
+            return 1
+            """);
+
+    private final UnifiedJedis jedis; // Redis 客户端
+
+    private final String key; // 限流数据的 Redis键名
+
+    private final int subWindows; // 子窗口数
+
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram redisLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 脚本调用耗时
+
+    /**
+     * 构造函数
+     * @param jedis 线程安全的 Redis 客户端，如 {@link JedisPooled}
+     * @param key Redis 键名
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param subWindows 子窗口数，越多越精确，但每次统计需要读取的字段越多
+     */
+    public BucketedSlidingWindowRateLimiter(UnifiedJedis jedis, String key, long windowSizeInMilliseconds, int maxRequests, int subWindows) {
+        if (subWindows <= 0) {
+            throw new IllegalArgumentException("subWindows must be positive: " + subWindows);
+        }
+        this.jedis = jedis;
+        this.key = key;
+        this.subWindows = subWindows;
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests, subWindows);
+    }
+
+    /**
+     * 构造函数，默认 10 个子窗口
+     * @param jedis 线程安全的 Redis 客户端，如 {@link JedisPooled}
+     * @param key Redis 键名
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public BucketedSlidingWindowRateLimiter(UnifiedJedis jedis, String key, long windowSizeInMilliseconds, int maxRequests) {
+        this(jedis, key, windowSizeInMilliseconds, maxRequests, 10);
+    }
+
+    /**
+     * 尝试获取许可
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * 尝试一次性获取多个许可
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(key, permits);
+    }
+
+    /**
+     * 以相同的窗口与阈值，尝试获取指定 key 的许可
+     * @param key Redis 键名
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * 以相同的窗口与阈值，尝试一次性获取指定 key 的多个许可，一次脚本调用完成
+     * @param key Redis 键名
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        Config c = config;
+        List<String> args = List.of(c.maxRequests, c.windowSize, c.subWindowSize, String.valueOf(subWindows), String.valueOf(permits));
+        Object result = metrics.time(redisLatency, () -> ACQUIRE_SCRIPT.eval(jedis, List.of(key), args));
+        return metrics.recordAcquire((long) result == 1);
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()));
+    }
+
+    /**
+     * 调整窗口大小与最大请求数，之后的请求按新参数判断；同一 key 在各节点上的参数应保持一致
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests, subWindows);
+    }
+
+    @Override
+    public long getWindowSizeInMilliseconds() {
+        return Long.parseLong(config.windowSize);
+    }
+
+    @Override
+    public int getMaxRequests() {
+        return Integer.parseInt(config.maxRequests);
+    }
+
+    /**
+     * 限流参数，预先格式化为脚本参数
+     * @param windowSize 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param subWindowSize 子窗口大小，单位：毫秒
+     */
+    private record Config(String windowSize, String maxRequests, String subWindowSize) {
+
+        static Config of(long windowSizeInMilliseconds, int maxRequests, int subWindows) {
+            if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+                throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
+            }
+            long subWindowSize = Math.max(1, windowSizeInMilliseconds / subWindows);
+            return new Config(String.valueOf(windowSizeInMilliseconds), String.valueOf(maxRequests), String.valueOf(subWindowSize));
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== Redis 分桶滑动窗口限流 ==========");
+
+        try (JedisPooled jedis = new JedisPooled("172.23.84.30", 6379, null, "arpen@2025")) {
+            long windowSizeInMilliSeconds = 1000; // 窗口大小，单位：毫秒
+            int maxRequests = 3; // 窗口允许的最大请求数
+
+            BucketedSlidingWindowRateLimiter limiter = new BucketedSlidingWindowRateLimiter(jedis, "my_api:bucketed", windowSizeInMilliSeconds, maxRequests);
+
+            for (int i = 0; i < 10; i++) {
+                if (limiter.tryAcquire()) {
+                    log.info("\033[34m{}\033[0m\t: Request {}\u001B[32m allowed\u001B[0m", LocalDateTime.now(), i + 1);
+                } else {
+                    log.info("\033[34m{}\033[0m\t: Request {}\u001B[31m denied\u001B[0m", LocalDateTime.now(), i + 1);
+                }
+
+                int sleepTimeInMills = (int) (Math.random() * 300) + 100; // 随机间隔 [100, 400）毫秒
+                Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+            }
+            log.info("{}", jedis.hgetAll("my_api:bucketed"));
+        }
+    }
+
+}
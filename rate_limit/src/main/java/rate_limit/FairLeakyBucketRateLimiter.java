@@ -0,0 +1,368 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.runtime.HashedWheelTimer;
+import rate_limit.runtime.MpscRingBuffer;
+import rate_limit.runtime.RateLimiterRuntime;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按租户公平出桶的漏桶限流器
+ * <p>
+ * {@link LeakyBucketRateLimiter} 只有一个 FIFO 队列，一个突发的大租户可以占满整个桶，其他租户的请求要么被拒绝、
+ * 要么排在它后面，尾延迟随之上升。本实现为每个租户维护独立的有界队列，总速率不变，出桶顺序按差额轮询（Deficit Round Robin）：
+ * <ul>
+ *     <li>有请求的租户组成一个轮转队列，轮到某个租户时为其补充 weight 个额度，每出桶一个请求消耗一个额度，
+ *     额度用完或队列为空时轮到下一个租户，每次出桶为 O(1)，与租户数无关；</li>
+ *     <li>每个租户最多缓存 tenantCapacity 个请求，所有租户合计最多 bucketCapacity 个，大租户突发只会让自己的请求被拒绝；</li>
+ *     <li>权重决定拥塞时各租户分得的速率比例，空闲租户的份额由其他租户按权重分享。</li>
+ * </ul>
+ * 入桶只需一次无锁队列的 CAS，轮转队列只由出桶任务访问；出桶任务与 {@link LeakyBucketRateLimiter} 一样登记在
+ * {@link RateLimiterRuntime} 的时间轮上，桶为空时暂停。
+ * <p>
+ * 租户状态在首次出现时创建并一直保留（队列按 tenantCapacity 预分配），适用于租户数有上限的场景。
+ */
+@Slf4j
+public class FairLeakyBucketRateLimiter implements AutoCloseable, Reconfigurable {
+
+    private static final int MAX_BATCH = 1024; // 每次最多放出的请求数，避免长时间占用时间轮线程
+
+    private final int bucketCapacity; // 所有租户合计的容量
+
+    private final int tenantCapacity; // 每个租户的容量
+
+    private volatile long leakIntervalNanos; // 相邻两个请求出桶的时间间隔，纳秒，可在运行时调整
+
+    private final Executor executor; // 执行请求的线程池，由调用方管理
+
+    private final RateLimiterRuntime runtime; // 执行出桶任务的定时服务
+
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>(); // 租户
+
+    private final AtomicInteger size = new AtomicInteger(); // 所有租户的请求数
+
+    private final Queue<Tenant> activated = new ConcurrentLinkedQueue<>(); // 由空变为非空、待加入轮转队列的租户
+
+    private final ArrayDeque<Tenant> round = new ArrayDeque<>(); // 轮转队列，只由出桶任务访问
+
+    private final MpscRingBuffer.StampedConsumer<Runnable> dispatcher = this::dispatch; // 避免每次出桶都创建 lambda
+
+    private final AtomicBoolean leaking = new AtomicBoolean(); // 是否已登记出桶任务，同一时刻最多一个
+
+    private long nextLeakAt; // 下一个请求的出桶时刻，只由持有出桶任务的线程访问
+
+    private volatile HashedWheelTimer.Timeout leakTimeout; // 待执行的出桶任务
+
+    private volatile boolean closed; // 是否已关闭
+
+    @Getter
+    private final LatencyHistogram queueTime = new LatencyHistogram(); // 排队时间
+
+    @Getter
+    private final LatencyHistogram executionTime = new LatencyHistogram(); // 执行时间
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标，排队与执行时间一直记录，不受开关控制
+
+    /**
+     * 构造函数，使用共享的 {@link RateLimiterRuntime}
+     * @param bucketCapacity 所有租户合计的容量
+     * @param tenantCapacity 每个租户的容量
+     * @param leakInterval 相邻两个请求出桶的时间间隔，可精确到纳秒
+     * @param executor 执行请求的线程池，由调用方管理
+     */
+    public FairLeakyBucketRateLimiter(int bucketCapacity, int tenantCapacity, Duration leakInterval, Executor executor) {
+        this(bucketCapacity, tenantCapacity, leakInterval, executor, RateLimiterRuntime.shared());
+    }
+
+    /**
+     * 构造函数
+     * @param bucketCapacity 所有租户合计的容量
+     * @param tenantCapacity 每个租户的容量
+     * @param leakInterval 相邻两个请求出桶的时间间隔，可精确到纳秒
+     * @param executor 执行请求的线程池，由调用方管理
+     * @param runtime 执行出桶任务的定时服务
+     */
+    public FairLeakyBucketRateLimiter(int bucketCapacity, int tenantCapacity, Duration leakInterval, Executor executor, RateLimiterRuntime runtime) {
+        if (bucketCapacity <= 0 || tenantCapacity <= 0) {
+            throw new IllegalArgumentException("bucketCapacity and tenantCapacity must be positive");
+        }
+        if (leakInterval.toNanos() <= 0) {
+            throw new IllegalArgumentException("leakInterval must be positive: " + leakInterval);
+        }
+        this.bucketCapacity = bucketCapacity;
+        this.tenantCapacity = Math.min(tenantCapacity, bucketCapacity);
+        this.leakIntervalNanos = leakInterval.toNanos();
+        this.executor = executor;
+        this.runtime = runtime;
+        this.nextLeakAt = System.nanoTime();
+        metrics.registerHistogram(RateLimiterMetrics.QUEUE_TIME, queueTime);
+        metrics.registerHistogram(RateLimiterMetrics.EXECUTION_TIME, executionTime);
+        metrics.gauge("queue_size", size::get);
+        metrics.gauge("tenants", tenants::size);
+    }
+
+    /**
+     * 设置租户的权重，未设置的租户权重为 1
+     * @param tenant 租户
+     * @param weight 权重，即每轮最多连续出桶的请求数
+     */
+    public void setWeight(String tenant, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+        tenantOf(tenant).weight = weight;
+    }
+
+    /**
+     * 尝试把租户的请求放入漏桶
+     * @param tenant 租户
+     * @param request 请求
+     * @return true 允许通过，false 租户队列或整个桶已满，被限流
+     */
+    public boolean tryAcquire(String tenant, Runnable request) {
+        if (closed) {
+            return false;
+        }
+        Tenant t = tenantOf(tenant);
+        if (size.incrementAndGet() > bucketCapacity) {
+            size.decrementAndGet();
+            return metrics.recordAcquire(false);
+        }
+        long now = System.nanoTime();
+        if (!t.queue.offer(request, now)) {
+            size.decrementAndGet();
+            return metrics.recordAcquire(false);
+        }
+        if (!t.active.get() && t.active.compareAndSet(false, true)) {
+            activated.add(t); // 租户由空变为非空，加入轮转
+        }
+        if (!leaking.get() && leaking.compareAndSet(false, true)) {
+            // 出桶任务已暂停，恢复；空闲期间不积攒额度
+            if (now - nextLeakAt > 0) {
+                nextLeakAt = now;
+            }
+            scheduleLeak(nextLeakAt - now);
+        }
+        return metrics.recordAcquire(true);
+    }
+
+    private Tenant tenantOf(String tenant) {
+        Tenant t = tenants.get(tenant);
+        return t != null ? t : tenants.computeIfAbsent(tenant, k -> new Tenant(tenantCapacity));
+    }
+
+    /**
+     * 放出所有到期的请求；桶中仍有请求时在下一个出桶时刻再次执行，桶空后暂停，由下一次入桶恢复
+     */
+    void leak() {
+        long now = System.nanoTime();
+        long leakIntervalNanos = this.leakIntervalNanos;
+        if (now - nextLeakAt >= 0) {
+            long due = Math.min(MAX_BATCH, (now - nextLeakAt) / leakIntervalNanos + 1);
+            int leaked = drain((int) due);
+            if (leaked == 0) {
+                nextLeakAt = now; // 桶为空，不积攒额度
+            } else if (leaked < due) {
+                nextLeakAt = now + leakIntervalNanos; // 桶已放空，下一个请求与本次间隔一个周期
+            } else {
+                nextLeakAt += leaked * leakIntervalNanos; // 按理论时刻推进，调度延迟不影响速率
+            }
+        }
+        if (size.get() == 0) {
+            leaking.set(false);
+            // 暂停前再检查一次：期间入桶的请求可能没能恢复出桶任务
+            if (size.get() == 0 || !leaking.compareAndSet(false, true)) {
+                return;
+            }
+        }
+        scheduleLeak(nextLeakAt - now);
+    }
+
+    /**
+     * 按差额轮询出桶最多 limit 个请求
+     * @return 实际出桶的请求数
+     */
+    private int drain(int limit) {
+        Tenant t;
+        while ((t = activated.poll()) != null) {
+            round.addLast(t);
+        }
+        int drained = 0;
+        int idle = 0; // 连续没有取到请求的租户数，生产者尚未完成写入时避免空转
+        while (drained < limit && (t = round.peekFirst()) != null) {
+            if (t.deficit == 0) {
+                t.deficit = t.weight; // 轮到该租户，补充一轮的额度
+            }
+            if (t.queue.drain(dispatcher, 1) == 0) {
+                round.pollFirst();
+                t.deficit = 0; // 队列为空时不保留额度
+                t.active.set(false);
+                if (!t.queue.isEmpty() && t.active.compareAndSet(false, true)) {
+                    round.addLast(t); // 期间有新请求入队
+                    if (++idle > round.size()) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            idle = 0;
+            drained++;
+            size.decrementAndGet();
+            if (--t.deficit == 0) {
+                round.addLast(round.pollFirst()); // 额度用完，轮到下一个租户
+            }
+        }
+        return drained;
+    }
+
+    private void scheduleLeak(long delayNanos) {
+        if (closed || runtime.isClosed()) {
+            return;
+        }
+        leakTimeout = runtime.schedule(this::leak, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        if (closed) {
+            leakTimeout.cancel(); // 登记的同时被关闭
+        }
+    }
+
+    private void dispatch(Runnable request, long enqueuedAt) {
+        long dispatchedAt = System.nanoTime();
+        queueTime.record(dispatchedAt - enqueuedAt);
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    request.run();
+                } finally {
+                    executionTime.record(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Request rejected by executor, dropped", e);
+        }
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.intervalOr(getLeakInterval()));
+    }
+
+    /**
+     * 调整出桶间隔，不阻塞入桶，桶中的请求保留，之后按新的间隔出桶
+     * <p>
+     * 已登记的出桶任务若尚未执行，则按新的间隔重新登记，调小间隔可立即生效。
+     * @param leakInterval 相邻两个请求出桶的时间间隔，可精确到纳秒
+     */
+    public synchronized void reconfigure(Duration leakInterval) {
+        if (leakInterval.toNanos() <= 0) {
+            throw new IllegalArgumentException("leakInterval must be positive: " + leakInterval);
+        }
+        this.leakIntervalNanos = leakInterval.toNanos();
+        HashedWheelTimer.Timeout timeout = leakTimeout;
+        if (timeout != null && timeout.cancel()) {
+            // 取消成功说明出桶任务尚未执行，由本线程持有并重新登记
+            long now = System.nanoTime();
+            if (nextLeakAt - (now + leakIntervalNanos) > 0) {
+                nextLeakAt = now + leakIntervalNanos;
+            }
+            scheduleLeak(nextLeakAt - now);
+        }
+    }
+
+    public Duration getLeakInterval() {
+        return Duration.ofNanos(leakIntervalNanos);
+    }
+
+    /**
+     * 所有租户等待出桶的请求数
+     * @return 请求数
+     */
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    /**
+     * 租户等待出桶的请求数
+     * @param tenant 租户
+     * @return 请求数
+     */
+    public int getQueueSize(String tenant) {
+        Tenant t = tenants.get(tenant);
+        return t == null ? 0 : t.queue.size();
+    }
+
+    /**
+     * 关闭限流器：取消出桶任务，桶中尚未出桶的请求不再执行
+     */
+    @Override
+    public void close() {
+        closed = true;
+        HashedWheelTimer.Timeout timeout = leakTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * 租户
+     */
+    private static final class Tenant {
+
+        final MpscRingBuffer<Runnable> queue; // 租户的请求队列
+
+        final AtomicBoolean active = new AtomicBoolean(); // 是否在轮转队列中
+
+        volatile int weight = 1; // 权重
+
+        int deficit; // 本轮剩余的额度，只由出桶任务访问
+
+        Tenant(int capacity) {
+            this.queue = new MpscRingBuffer<>(capacity);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4, LeakyBucketRateLimiter::newWorker);
+        // 每毫秒出桶 1 个请求，合计最多缓存 1000 个，每个租户最多 200 个
+        FairLeakyBucketRateLimiter rateLimiter = new FairLeakyBucketRateLimiter(1000, 200, Duration.ofMillis(1), executor);
+        rateLimiter.setWeight("vip", 2);
+
+        Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+        for (int second = 0; second < 3; second++) {
+            for (int i = 0; i < 2000; i++) { // 大租户突发，每秒 2000 个请求，超过漏桶速率
+                rateLimiter.tryAcquire("noisy", () -> { });
+            }
+            for (int ms = 0; ms < 1000; ms += 20) {
+                for (String tenant : new String[]{"small", "vip"}) { // 小租户每 20 毫秒 1 个请求
+                    long submittedAt = System.nanoTime();
+                    rateLimiter.tryAcquire(tenant, () -> latencies.computeIfAbsent(tenant, k -> new LatencyHistogram())
+                            .record(System.nanoTime() - submittedAt));
+                }
+                Thread.sleep(20);
+            }
+        }
+
+        latencies.forEach((tenant, histogram) -> log.info("{} 排队时间：p99={}ms", tenant, TimeUnit.NANOSECONDS.toMillis(histogram.valueAtPercentile(99))));
+        log.info("整体排队时间：{}", rateLimiter.getQueueTime());
+        rateLimiter.close();
+        executor.shutdown();
+    }
+
+}
@@ -4,56 +4,155 @@ package rate_limit;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 固定窗口限流器
+ * 固定窗口限流器（线程安全）
+ * <p>
+ * 窗口编号与窗口内的请求数打包在同一个 long 中（高 32 位为窗口编号，低 32 位为请求数），
+ * 窗口重置与计数通过一次 CAS 原子完成，多个线程共享时不会多放行。
+ * 所有线程竞争同一个 long，核数很多时可改用 {@link StripedFixedWindowRateLimiter}。
+ * <p>
+ * 窗口大小与最大请求数可通过 {@link #reconfigure(long, int)} 在运行时调整，当前窗口的计数按比例保留。
  */
 @Slf4j
-public class FixedWindowRateLimiter {
+public class FixedWindowRateLimiter extends AbstractRateLimiter implements Reconfigurable {
 
-    private final long windowSizeInMilliseconds; // 滑动窗口大小，单位：毫秒
+    private volatile Config config; // 限流参数，调整时整体替换
 
-    private final int maxRequests; // 允许通过的最大请求数
-
-    private long lastRequestTimestamp; // 上次请求的时间戳
-
-    private int counter; // 当前请求数
+    private final AtomicLong state; // 高 32 位为窗口编号，低 32 位为窗口内的请求数
 
     /**
      * 构造函数
-     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
      * @param maxRequests 允许通过的最大请求数
-     * @param lastRequestTimestamp 上次请求的时间戳
-     * @param counter 当前请求数
+     * @param lastRequestTimestamp 当前窗口的起始时间戳
+     * @param counter 当前窗口内的请求数
      */
     public FixedWindowRateLimiter(long windowSizeInMilliseconds, int maxRequests, long lastRequestTimestamp, int counter) {
-        this.windowSizeInMilliseconds = windowSizeInMilliseconds;
-        this.maxRequests = maxRequests;
-        this.lastRequestTimestamp = lastRequestTimestamp;
-        this.counter = counter;
+        checkLimits(windowSizeInMilliseconds, maxRequests);
+        this.config = new Config(windowSizeInMilliseconds, maxRequests, lastRequestTimestamp);
+        this.state = new AtomicLong(pack(0, counter));
     }
 
     /**
-     * 尝试获取许可
+     * 尝试一次性获取多个许可
+     * @param permits 许可数
      * @return true 允许通过，false 被限流
      */
-    public boolean tryAcquire() {
-        long now = System.currentTimeMillis(); // 当前时间
+    @Override
+    protected boolean tryAcquirePermits(int permits) {
+        checkPermits(permits);
+        for (;;) {
+            Config c = config;
+            int windowId = c.windowId(System.currentTimeMillis());
+            long current = state.get();
+
+            // 若请求超出当前时间窗口，计数从 0 开始
+            int counter = windowOf(current) == windowId ? countOf(current) : 0;
+            if (counter > c.maxRequests - permits) {
+                return false; // 被限流
+            }
+            if (state.compareAndSet(current, pack(windowId, counter + permits))) {
+                return true; // 允许通过
+            }
+        }
+    }
+
+    @Override
+    protected long nanosUntilAvailable(int permits) {
+        Config c = config;
+        long now = System.currentTimeMillis();
+        long current = state.get();
+        if (windowOf(current) != c.windowId(now) || countOf(current) <= c.maxRequests - permits) {
+            return 0;
+        }
+        long nextWindowStart = c.originTimestamp + ((now - c.originTimestamp) / c.windowSizeInMilliseconds + 1) * c.windowSizeInMilliseconds;
+        return TimeUnit.MILLISECONDS.toNanos(nextWindowStart - now); // 当前窗口已满，等到下一个窗口
+    }
+
+    @Override
+    protected int maxPermits() {
+        return config.maxRequests;
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()));
+    }
+
+    /**
+     * 调整窗口大小与最大请求数，不阻塞并发的 tryAcquire
+     * <p>
+     * 当前窗口已用的许可按比例换算（如上限由 100 调为 50 时，已用 40 个换算为 20 个）；
+     * 窗口大小变化时新窗口从此刻开始，并沿用当前窗口的编号，已有计数继续有效。
+     * 调整的瞬间，已读取旧参数的并发请求仍按旧参数判断一次。
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     */
+    public synchronized void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        checkLimits(windowSizeInMilliseconds, maxRequests);
+        Config old = config;
+        long now = System.currentTimeMillis();
+        int windowId = old.windowId(now);
+        long origin = windowSizeInMilliseconds == old.windowSizeInMilliseconds
+                ? old.originTimestamp
+                : now - (long) windowId * windowSizeInMilliseconds;
+        config = new Config(windowSizeInMilliseconds, maxRequests, origin);
+
+        long current;
+        do {
+            current = state.get();
+            if (windowOf(current) != windowId) {
+                break; // 当前窗口还没有请求
+            }
+        } while (!state.compareAndSet(current, pack(windowId, rescale(countOf(current), old.maxRequests, maxRequests))));
+        signalWaiters();
+    }
 
-        // 若请求超出当前时间窗口
-        if (now - lastRequestTimestamp > windowSizeInMilliseconds) {
-            counter = 0; // 重置计数器
-            lastRequestTimestamp = now;
+    public long getWindowSizeInMilliseconds() {
+        return config.windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return config.maxRequests;
+    }
+
+    private static void checkLimits(long windowSizeInMilliseconds, int maxRequests) {
+        if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
         }
+    }
 
-        if (counter < maxRequests) {
-            counter++; // 增加计数器
-            return true; // 允许通过
-        } else {
-            return false; // 被限流
+    /**
+     * 限流参数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     * @param originTimestamp 第一个窗口的起始时间戳，之后的窗口依次对齐
+     */
+    private record Config(long windowSizeInMilliseconds, int maxRequests, long originTimestamp) {
+
+        /**
+         * 计算时间戳所在的窗口编号，窗口编号只用于判断是否相等，溢出后回绕不影响结果
+         */
+        int windowId(long now) {
+            return (int) ((now - originTimestamp) / windowSizeInMilliseconds);
         }
     }
 
+    static long pack(int windowId, int count) {
+        return ((long) windowId << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    static int windowOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    static int countOf(long state) {
+        return (int) state;
+    }
+
     public static void main(String[] args) throws InterruptedException {
         System.out.println("========== 固定窗口限流 ==========");
 
@@ -0,0 +1,207 @@
+package rate_limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GCRA（Generic Cell Rate Algorithm，通用信元速率算法）限流器
+ * <p>
+ * 把“窗口内最多 maxRequests 个请求”看作每隔 emissionInterval = 窗口大小 / maxRequests 到达一个请求，
+ * 只记录下一个请求的理论到达时间 TAT（Theoretical Arrival Time）：
+ * <ul>
+ *     <li>请求在 now 到达时，若 TAT - now 不超过容忍度 tolerance = (burst - 1) × emissionInterval，则放行，并令 TAT = max(TAT, now) + emissionInterval；</li>
+ *     <li>否则拒绝，需要等待 TAT - now - tolerance 后才能放行，即 retry-after。</li>
+ * </ul>
+ * 状态只有一个 long，一次 CAS 完成判断与更新，不需要补充线程，也不随请求数增长；
+ * 效果与容量为 burst 的惰性令牌桶（{@link TokenBucketRateLimiter#lazyRefill}）等价，但额外免费给出了 retry-after。
+ * 分布式场景见 {@link RedisGcraRateLimiter}。
+ * <p>
+ * 速率与突发数可通过 {@link #reconfigure(long, int, int)} 在运行时调整，已用的突发额度按比例保留。
+ */
+@Slf4j
+public class GcraRateLimiter extends AbstractRateLimiter implements Reconfigurable {
+
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    private final AtomicLong tat; // 下一个请求的理论到达时间，System.nanoTime() 时间轴
+
+    /**
+     * 构造函数，允许的突发请求数与窗口内的最大请求数相同
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public GcraRateLimiter(long windowSizeInMilliseconds, int maxRequests) {
+        this(windowSizeInMilliseconds, maxRequests, maxRequests);
+    }
+
+    /**
+     * 构造函数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数，决定平均速率
+     * @param burst 允许的突发请求数，即连续到达时最多放行多少个请求
+     */
+    public GcraRateLimiter(long windowSizeInMilliseconds, int maxRequests, int burst) {
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests, burst);
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 尝试一次性获取多个许可
+     * @param permits 许可数，不超过 burst
+     * @return true 允许通过，false 被限流
+     */
+    @Override
+    protected boolean tryAcquirePermits(int permits) {
+        return retryAfter(permits) == 0;
+    }
+
+    /**
+     * 尝试获取许可，被限流时返回需要等待的时间
+     * @return 0 表示允许通过；大于 0 表示被限流，为再次请求前需要等待的纳秒数
+     */
+    public long tryAcquireOrRetryAfter() {
+        return tryAcquireOrRetryAfter(1);
+    }
+
+    /**
+     * 尝试一次性获取多个许可，被限流时返回需要等待的时间
+     * <p>
+     * permits 个许可相当于 TAT 一次推进 permits 个间隔，放行条件为推进后的 TAT - now 不超过 tolerance + emissionInterval。
+     * @param permits 许可数，超过 burst 的请求永远不会被放行
+     * @return 0 表示允许通过；大于 0 表示被限流，为再次请求前需要等待的纳秒数，permits 超过 burst 时为 Long.MAX_VALUE
+     */
+    public long tryAcquireOrRetryAfter(int permits) {
+        long retryAfter = retryAfter(permits);
+        getMetrics().recordAcquire(retryAfter == 0);
+        return retryAfter;
+    }
+
+    private long retryAfter(int permits) {
+        checkPermits(permits);
+        for (;;) {
+            Config c = config;
+            if (permits > c.burst) {
+                return Long.MAX_VALUE;
+            }
+            long cost = c.emissionIntervalNanos * permits;
+            long now = System.nanoTime();
+            long current = tat.get();
+            long base = current - now < 0 ? now : current; // 空闲期间不累积额度，最多放行 burst 个
+            long retryAfter = base + cost - c.emissionIntervalNanos - now - c.toleranceNanos;
+            if (retryAfter > 0) {
+                return retryAfter; // 被限流
+            }
+            if (tat.compareAndSet(current, base + cost)) {
+                return 0; // 允许通过
+            }
+        }
+    }
+
+    @Override
+    protected long nanosUntilAvailable(int permits) {
+        Config c = config;
+        long now = System.nanoTime();
+        long current = tat.get();
+        long base = current - now < 0 ? now : current;
+        return Math.max(0, base + c.emissionIntervalNanos * (permits - 1) - now - c.toleranceNanos);
+    }
+
+    @Override
+    protected int maxPermits() {
+        return config.burst;
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()), limits.burstOr(getBurst()));
+    }
+
+    /**
+     * 调整速率与突发数，不阻塞并发的 tryAcquire
+     * <p>
+     * TAT 超前当前时间的部分即已用的突发额度，按新旧额度（burst × emissionInterval）的比例换算，
+     * 如突发数由 100 调为 50 时，已用 40 个换算为 20 个。
+     * 调整的瞬间，已读取旧参数的并发请求仍按旧参数判断一次。
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param burst 允许的突发请求数
+     */
+    public synchronized void reconfigure(long windowSizeInMilliseconds, int maxRequests, int burst) {
+        Config old = config;
+        Config next = Config.of(windowSizeInMilliseconds, maxRequests, burst);
+        config = next;
+        double ratio = (double) next.burstNanos() / old.burstNanos();
+        for (;;) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            if (current - now <= 0) {
+                break; // 没有已用的额度
+            }
+            if (tat.compareAndSet(current, now + (long) Math.ceil((current - now) * ratio))) {
+                break;
+            }
+        }
+        signalWaiters();
+    }
+
+    public int getBurst() {
+        return config.burst;
+    }
+
+    public long getWindowSizeInMilliseconds() {
+        return config.windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return config.maxRequests;
+    }
+
+    /**
+     * 限流参数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param burst 允许的突发请求数
+     * @param emissionIntervalNanos 相邻两个请求的理论间隔，纳秒
+     * @param toleranceNanos TAT 最多超前当前时间多少，纳秒
+     */
+    private record Config(long windowSizeInMilliseconds, int maxRequests, int burst, long emissionIntervalNanos, long toleranceNanos) {
+
+        static Config of(long windowSizeInMilliseconds, int maxRequests, int burst) {
+            if (windowSizeInMilliseconds <= 0 || maxRequests <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("windowSizeInMilliseconds, maxRequests and burst must be positive");
+            }
+            long emissionIntervalNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowSizeInMilliseconds) / maxRequests);
+            return new Config(windowSizeInMilliseconds, maxRequests, burst, emissionIntervalNanos, emissionIntervalNanos * (burst - 1));
+        }
+
+        /**
+         * 突发额度对应的时长，即 TAT 最多超前当前时间多少
+         */
+        long burstNanos() {
+            return toleranceNanos + emissionIntervalNanos;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== GCRA 限流 ==========");
+
+        GcraRateLimiter rateLimiter = new GcraRateLimiter(1000, 3); // 每秒 3 个请求，允许突发 3 个
+
+        for (int i = 0; i < 10; i++) {
+            long retryAfter = rateLimiter.tryAcquireOrRetryAfter();
+            if (retryAfter == 0) {
+                log.info("\033[34m{}\033[0m\t: Request {}\u001B[32m allowed\u001B[0m", LocalDateTime.now(), i + 1);
+            } else {
+                log.info("\033[34m{}\033[0m\t: Request {}\u001B[31m denied\u001B[0m, retry after {} ms", LocalDateTime.now(), i + 1,
+                        TimeUnit.NANOSECONDS.toMillis(retryAfter));
+            }
+
+            int sleepTimeInMills = (int) (Math.random() * 300) + 100; // 随机间隔 [100, 400）毫秒
+            Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.RateLimiterMetrics;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 多级组合限流器（如 全局 → 租户 → 用户）
+ * <p>
+ * 分别调用多个限流器时，下级拒绝后上级已扣减的许可不会归还，总是先扣的级别被白白消耗。
+ * 本限流器把每一级表示为一个 {@link KeyedRateLimiter}（状态为 {@code long[]} 哈希表中的一个时间戳），
+ * 一次调用依次获取各级的许可，任意一级拒绝时归还已获取的级别，结果要么全部扣减、要么全部不扣减。
+ * <p>
+ * 按从最细到最粗的顺序（用户 → 租户 → 全局）获取：最细的级别最容易拒绝，且竞争最少，
+ * 被拒绝的请求通常不会触及全局级别，减少对全局状态的争用与撤销。
+ * 撤销前的短暂时间内，上级可能多计入一次请求，并发请求因此被误拒的概率很小，但不会多放行。
+ */
+@Slf4j
+public class HierarchicalRateLimiter {
+
+    /**
+     * 全局级别使用的 key
+     */
+    public static final String GLOBAL = "*";
+
+    private final KeyedRateLimiter[] levels; // 各级限流器，从最粗到最细
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 整体的指标，各级限流器自身的指标不记录组合请求
+
+    /**
+     * 构造函数
+     * @param levels 各级限流器，从最粗到最细，如 全局、租户、用户
+     */
+    public HierarchicalRateLimiter(KeyedRateLimiter... levels) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("at least one level is required");
+        }
+        this.levels = levels.clone();
+    }
+
+    /**
+     * 尝试获取所有级别的许可
+     * @param keys 各级的 key，与构造函数中的级别一一对应，全局级别可使用 {@link #GLOBAL}
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String... keys) {
+        return tryAcquireOrDeniedLevel(1, keys) < 0;
+    }
+
+    /**
+     * 尝试一次性获取所有级别的多个许可
+     * @param permits 许可数
+     * @param keys 各级的 key
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(int permits, String... keys) {
+        return tryAcquireOrDeniedLevel(permits, keys) < 0;
+    }
+
+    /**
+     * 尝试一次性获取所有级别的多个许可，被限流时返回拒绝的级别
+     * @param permits 许可数
+     * @param keys 各级的 key
+     * @return -1 表示允许通过；否则为拒绝的级别下标，与构造函数中的顺序一致
+     */
+    public int tryAcquireOrDeniedLevel(int permits, String... keys) {
+        if (keys.length != levels.length) {
+            throw new IllegalArgumentException("expected " + levels.length + " keys, got " + keys.length);
+        }
+        for (int i = levels.length - 1; i >= 0; i--) {
+            if (!levels[i].tryAcquirePermits(keys[i], permits)) {
+                // 归还已获取的更细级别
+                for (int j = i + 1; j < levels.length; j++) {
+                    levels[j].release(keys[j], permits);
+                }
+                metrics.recordAcquire(false);
+                return i;
+            }
+        }
+        metrics.recordAcquire(true);
+        return -1;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 多级组合限流 ==========");
+
+        HierarchicalRateLimiter rateLimiter = new HierarchicalRateLimiter(
+                new KeyedRateLimiter(5, Duration.ofMillis(200), 1),           // 全局：容量为5，每200毫秒生成1个令牌
+                new KeyedRateLimiter(3, Duration.ofMillis(400), 10_000),      // 租户：容量为3，每400毫秒生成1个令牌
+                new KeyedRateLimiter(2, Duration.ofMillis(1000), 1_000_000)); // 用户：容量为2，每秒生成1个令牌
+
+        String[] levelNames = {"global", "tenant", "user"};
+        String[] users = {"user-1", "user-2", "user-3"};
+        for (int i = 0; i < 15; i++) {
+            String user = users[(int) (Math.random() * users.length)];
+            String tenant = user.equals("user-3") ? "tenant-b" : "tenant-a";
+            int denied = rateLimiter.tryAcquireOrDeniedLevel(1, GLOBAL, tenant, user);
+            if (denied < 0) {
+                log.info("\033[34m{}\033[0m\t: Request {} from {}/{}\u001B[32m allowed\u001B[0m", LocalDateTime.now(), i + 1, tenant, user);
+            } else {
+                log.info("\033[34m{}\033[0m\t: Request {} from {}/{}\u001B[31m denied\u001B[0m by {}", LocalDateTime.now(), i + 1, tenant, user, levelNames[denied]);
+            }
+
+            int sleepTimeInMills = (int) (Math.random() * 150) + 50; // 随机间隔 [50, 200）毫秒
+            Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+        }
+    }
+
+}
@@ -0,0 +1,467 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.RateLimiterMetrics;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 按 key 限流的令牌桶限流器（按用户、按 IP 等维度限流）
+ * <p>
+ * 每个 key 对应一个惰性补充的令牌桶（见 {@link TokenBucketRateLimiter#lazyRefill(int, double)}），
+ * 但不为每个 key 创建限流器对象：所有 key 的状态都保存在分段的 {@code long[]} 开放寻址哈希表中，
+ * 每个 key 只占两个 long —— key 的 64 位指纹和令牌数为 0 的时刻 emptyAt。
+ * 槽位数按装载因子 0.75 并向上取 2 的幂，每个 key 约占 21～43 字节，堆占用在构造时即可确定上限，
+ * 不随 key 的数量无限增长（1000 万个 key 约 256MB）。
+ * <p>
+ * 令牌桶已装满的 key 与从未出现过的 key 状态完全相同（新 key 的令牌桶视为装满），因此可以随时淘汰而不影响限流结果。
+ * 每次访问分段时顺带检查少量槽位、淘汰其中已装满的 key，没有全表扫描的停顿；
+ * 只有分段已满且没有可淘汰的 key 时，才会淘汰令牌最多的 key（该 key 的令牌桶被提前补满）。
+ * <p>
+ * key 以 64 位指纹区分，1000 万个 key 时出现指纹冲突的概率约为 10^-6 量级，冲突的 key 会共用一个令牌桶。
+ * <p>
+ * 容量与令牌生成间隔可通过 {@link #reconfigure(int, Duration)} 在运行时调整，各 key 的令牌数按容量比例换算。
+ */
+@Slf4j
+public final class KeyedRateLimiter implements Reconfigurable {
+
+    private static final float LOAD_FACTOR = 0.75f; // 哈希表装载因子
+
+    private static final int MIN_SEGMENT_SLOTS = 16; // 每个分段的最小槽位数
+
+    private static final int SWEEP_SLOTS_PER_CALL = 2; // 每次访问顺带检查的槽位数
+
+    private static final int EVICTION_SCAN_SLOTS = 32; // 分段满时查找淘汰对象的槽位数
+
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    @Getter
+    private final int maxKeys; // 最多保存的 key 数
+
+    private final Segment[] segments; // 分段，每个分段独立加锁
+
+    private final int segmentShift; // 指纹右移该位数后得到分段下标
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    /**
+     * 构造函数
+     * @param bucketCapacity 每个 key 的令牌桶容量
+     * @param refillInterval 每个令牌生成的时间间隔，可精确到纳秒
+     * @param maxKeys 最多保存的 key 数，决定堆占用的上限
+     */
+    public KeyedRateLimiter(int bucketCapacity, Duration refillInterval, int maxKeys) {
+        this(bucketCapacity, refillInterval, maxKeys, Runtime.getRuntime().availableProcessors() * 8);
+    }
+
+    /**
+     * 构造函数
+     * @param bucketCapacity 每个 key 的令牌桶容量
+     * @param refillInterval 每个令牌生成的时间间隔，可精确到纳秒
+     * @param maxKeys 最多保存的 key 数，决定堆占用的上限
+     * @param concurrencyLevel 预计的并发线程数，决定分段数量
+     */
+    public KeyedRateLimiter(int bucketCapacity, Duration refillInterval, int maxKeys, int concurrencyLevel) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be positive: " + maxKeys);
+        }
+        this.config = Config.of(bucketCapacity, refillInterval);
+        this.maxKeys = maxKeys;
+
+        // 分段数取 2 的幂，且保证每个分段至少能容纳 MIN_SEGMENT_SLOTS 个 key
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(concurrencyLevel, maxKeys / MIN_SEGMENT_SLOTS)));
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+        this.segments = new Segment[segmentCount];
+        int keysPerSegment = (maxKeys + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(keysPerSegment);
+        }
+        metrics.gauge("keys", this::size);
+    }
+
+    /**
+     * 尝试获取 key 对应的令牌
+     * @param key 限流维度的 key，如用户 ID、IP
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key) {
+        long fingerprint = fingerprint(key);
+        Config c = config;
+        return metrics.recordAcquire(segmentFor(fingerprint).tryAcquire(fingerprint, c.refillIntervalNanos, c.burstNanos, System.nanoTime()) == 0);
+    }
+
+    /**
+     * 尝试一次性获取 key 对应的多个令牌，令牌不足时一个都不扣减
+     * @param key 限流维度的 key，如用户 ID、IP
+     * @param permits 令牌数，超过桶容量的请求永远不会成功
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key, int permits) {
+        return metrics.recordAcquire(tryAcquirePermits(key, permits));
+    }
+
+    /**
+     * 同 {@link #tryAcquire(String, int)}，但不记录指标，供组合限流时由外层统一记录
+     */
+    boolean tryAcquirePermits(String key, int permits) {
+        return retryAfter(key, permits) == 0;
+    }
+
+    /**
+     * 尝试一次性获取 key 对应的多个令牌，被限流时返回需要等待的时间，如用于 HTTP 响应的 Retry-After
+     * @param key 限流维度的 key，如用户 ID、IP
+     * @param permits 令牌数
+     * @return 0 表示允许通过；大于 0 表示被限流，为令牌足够前需要等待的纳秒数，permits 超过桶容量时为 Long.MAX_VALUE
+     */
+    public long tryAcquireOrRetryAfter(String key, int permits) {
+        long retryAfter = retryAfter(key, permits);
+        metrics.recordAcquire(retryAfter == 0);
+        return retryAfter;
+    }
+
+    private long retryAfter(String key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        Config c = config;
+        if (permits > c.bucketCapacity) {
+            return Long.MAX_VALUE;
+        }
+        long fingerprint = fingerprint(key);
+        return segmentFor(fingerprint).tryAcquire(fingerprint, c.cost(permits), c.burstNanos, System.nanoTime());
+    }
+
+    /**
+     * 归还 key 对应的令牌，用于多个限流器组合使用时撤销已获取的令牌
+     * key 已被淘汰时其令牌桶视为装满，无需归还
+     * @param key 限流维度的 key
+     * @param permits 令牌数
+     */
+    public void release(String key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        long fingerprint = fingerprint(key);
+        segmentFor(fingerprint).release(fingerprint, config.cost(permits));
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.capacityOr(getBucketCapacity()), limits.intervalOr(getRefillInterval()));
+    }
+
+    /**
+     * 调整所有 key 的容量与令牌生成间隔，不阻塞并发的 tryAcquire
+     * <p>
+     * 同 {@link TokenBucketRateLimiter#reconfigure(int, Duration)} 的惰性补充模式，各 key 的令牌数按“占容量的比例”换算到新的时间轴；
+     * 逐个分段加锁换算，每个分段只短暂阻塞访问该分段的请求。调整的瞬间，已读取旧参数的并发请求仍按旧参数判断一次。
+     * @param bucketCapacity 每个 key 的令牌桶容量
+     * @param refillInterval 每个令牌生成的时间间隔，可精确到纳秒
+     */
+    public synchronized void reconfigure(int bucketCapacity, Duration refillInterval) {
+        Config old = config;
+        Config next = Config.of(bucketCapacity, refillInterval);
+        config = next;
+        for (Segment segment : segments) {
+            segment.rescale(old.burstNanos, next.burstNanos, System.nanoTime());
+        }
+    }
+
+    public int getBucketCapacity() {
+        return config.bucketCapacity;
+    }
+
+    public Duration getRefillInterval() {
+        return Duration.ofNanos(config.refillIntervalNanos);
+    }
+
+    /**
+     * 当前保存的 key 数（包含尚未被清理的已装满的 key）
+     * @return key 数
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 哈希表当前占用的堆内存，字节
+     * @return 字节数
+     */
+    public long footprintBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.footprintBytes();
+        }
+        return bytes;
+    }
+
+    private Segment segmentFor(long fingerprint) {
+        return segments.length == 1 ? segments[0] : segments[(int) (fingerprint >>> segmentShift)];
+    }
+
+    /**
+     * 计算 key 的 64 位指纹（FNV-1a + murmur3 fmix64），0 被保留为空槽位标记
+     * @param key 限流维度的 key
+     * @return 非 0 的指纹
+     */
+    static long fingerprint(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 哈希表分段：线性探测的开放寻址表，table[2i] 为指纹，table[2i + 1] 为 emptyAt
+     */
+    private final class Segment {
+
+        private final int maxKeys; // 该分段最多保存的 key 数
+
+        private final int maxSlots; // 最大槽位数
+
+        private long[] table; // 指纹与 emptyAt 交替存放
+
+        private int mask; // 槽位数 - 1
+
+        private int threshold; // 扩容或淘汰的阈值
+
+        private int size; // 当前 key 数
+
+        private int sweepCursor; // 增量清理的游标
+
+        Segment(int maxKeys) {
+            this.maxKeys = maxKeys;
+            this.maxSlots = Integer.highestOneBit(Math.max(MIN_SEGMENT_SLOTS, (int) Math.ceil(maxKeys / LOAD_FACTOR)) * 2 - 1);
+            resize(MIN_SEGMENT_SLOTS);
+        }
+
+        /**
+         * @return 0 表示获取成功，否则为令牌足够前还需等待的纳秒数
+         */
+        synchronized long tryAcquire(long fingerprint, long cost, long burstNanos, long now) {
+            sweep(now, burstNanos);
+
+            int slot = find(fingerprint);
+            if (table[slot << 1] == fingerprint) {
+                long current = table[(slot << 1) + 1];
+                long base = now - current > burstNanos ? now - burstNanos : current;
+                long next = base + cost;
+                if (next - now > 0) {
+                    return next - now; // 令牌不足
+                }
+                table[(slot << 1) + 1] = next;
+                return 0;
+            }
+
+            // 新 key 的令牌桶视为装满
+            if (cost > burstNanos) {
+                return Long.MAX_VALUE;
+            }
+            if (size >= threshold) {
+                makeRoom(now, burstNanos);
+                slot = find(fingerprint);
+            }
+            table[slot << 1] = fingerprint;
+            table[(slot << 1) + 1] = now - burstNanos + cost;
+            size++;
+            return 0;
+        }
+
+        synchronized void release(long fingerprint, long cost) {
+            int slot = find(fingerprint);
+            if (table[slot << 1] == fingerprint) {
+                table[(slot << 1) + 1] -= cost; // 超过容量的部分在下次获取时按装满处理
+            }
+        }
+
+        /**
+         * 按新旧“从空到满”时长的比例换算每个 key 的 emptyAt，令牌占容量的比例不变
+         */
+        synchronized void rescale(long oldBurstNanos, long newBurstNanos, long now) {
+            for (int slot = 0; slot <= mask; slot++) {
+                if (table[slot << 1] != 0) {
+                    double fill = Math.min(1.0, (double) (now - table[(slot << 1) + 1]) / oldBurstNanos);
+                    table[(slot << 1) + 1] = now - (long) (fill * newBurstNanos);
+                }
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long footprintBytes() {
+            return (long) table.length * Long.BYTES;
+        }
+
+        /**
+         * 查找指纹所在的槽位；不存在时返回探测到的第一个空槽位
+         */
+        private int find(long fingerprint) {
+            int slot = (int) fingerprint & mask;
+            for (;;) {
+                long current = table[slot << 1];
+                if (current == fingerprint || current == 0) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * 增量清理：检查游标处的少量槽位，淘汰令牌桶已装满的 key
+         */
+        private void sweep(long now, long burstNanos) {
+            for (int i = 0; i < SWEEP_SLOTS_PER_CALL && size > 0; i++) {
+                int slot = sweepCursor = (sweepCursor + 1) & mask;
+                if (table[slot << 1] != 0 && now - table[(slot << 1) + 1] >= burstNanos) {
+                    removeAt(slot);
+                }
+            }
+        }
+
+        /**
+         * 为新 key 腾出位置：未达到最大槽位数时扩容，否则淘汰令牌最多的 key
+         */
+        private void makeRoom(long now, long burstNanos) {
+            if (size < maxKeys && mask + 1 < maxSlots) {
+                resize((mask + 1) << 1);
+                return;
+            }
+            int victim = -1;
+            long oldest = 0;
+            for (int i = 0; i < EVICTION_SCAN_SLOTS; i++) {
+                int slot = sweepCursor = (sweepCursor + 1) & mask;
+                if (table[slot << 1] == 0) {
+                    continue;
+                }
+                long emptyAt = table[(slot << 1) + 1];
+                if (now - emptyAt >= burstNanos) {
+                    victim = slot; // 令牌桶已装满，淘汰不影响限流结果
+                    break;
+                }
+                if (victim < 0 || emptyAt - oldest < 0) {
+                    victim = slot;
+                    oldest = emptyAt;
+                }
+            }
+            if (victim < 0) {
+                // 扫描范围内全是空槽位，说明表中的 key 集中在其他位置，退化为从头查找
+                for (victim = 0; table[victim << 1] == 0; victim++) {
+                }
+            }
+            removeAt(victim);
+        }
+
+        /**
+         * 删除槽位，并将后续探测链上的 key 前移（backward shift），无需墓碑标记
+         */
+        private void removeAt(int slot) {
+            int hole = slot;
+            int i = slot;
+            for (;;) {
+                i = (i + 1) & mask;
+                long fingerprint = table[i << 1];
+                if (fingerprint == 0) {
+                    break;
+                }
+                int home = (int) fingerprint & mask;
+                // 空洞位于 [home, i) 之间时，该 key 可以前移到空洞处
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    table[hole << 1] = fingerprint;
+                    table[(hole << 1) + 1] = table[(i << 1) + 1];
+                    hole = i;
+                }
+            }
+            table[hole << 1] = 0;
+            table[(hole << 1) + 1] = 0;
+            size--;
+        }
+
+        private void resize(int slots) {
+            long[] old = table;
+            table = new long[slots << 1];
+            mask = slots - 1;
+            threshold = Math.min((int) (slots * LOAD_FACTOR), maxKeys);
+            sweepCursor = 0;
+            if (old == null) {
+                return;
+            }
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i] != 0) {
+                    int slot = find(old[i]);
+                    table[slot << 1] = old[i];
+                    table[(slot << 1) + 1] = old[i + 1];
+                }
+            }
+        }
+    }
+
+    /**
+     * 限流参数
+     * @param bucketCapacity 令牌桶的容量
+     * @param refillIntervalNanos 每个令牌生成的时间间隔，纳秒
+     * @param burstNanos 令牌桶从空到满所需的时间，纳秒
+     */
+    private record Config(int bucketCapacity, long refillIntervalNanos, long burstNanos) {
+
+        static Config of(int bucketCapacity, Duration refillInterval) {
+            if (bucketCapacity <= 0) {
+                throw new IllegalArgumentException("bucketCapacity must be positive: " + bucketCapacity);
+            }
+            if (refillInterval.toNanos() <= 0) {
+                throw new IllegalArgumentException("refillInterval must be positive: " + refillInterval);
+            }
+            long refillIntervalNanos = refillInterval.toNanos();
+            return new Config(bucketCapacity, refillIntervalNanos, cost(refillIntervalNanos, bucketCapacity));
+        }
+
+        /**
+         * @return permits 个令牌对应的时长，纳秒，上限为 Long.MAX_VALUE / 4 以免与时间戳相加时溢出
+         */
+        long cost(int permits) {
+            return cost(refillIntervalNanos, permits);
+        }
+
+        private static long cost(long refillIntervalNanos, int permits) {
+            return refillIntervalNanos > Long.MAX_VALUE / 4 / permits ? Long.MAX_VALUE / 4 : refillIntervalNanos * permits;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 按 key 限流 ==========");
+
+        // 每个用户容量为3，每500毫秒生成1个令牌，最多保存100万个用户的状态
+        KeyedRateLimiter rateLimiter = new KeyedRateLimiter(3, Duration.ofMillis(500), 1_000_000);
+
+        String[] users = {"user-1", "user-2", "user-3"};
+        for (int i = 0; i < 10; i++) {
+            String user = users[(int) (Math.random() * users.length)];
+            if (rateLimiter.tryAcquire(user)) {
+                log.info("\033[34m{}\033[0m\t: Request {} from {}\u001B[32m allowed\u001B[0m", LocalDateTime.now(), i + 1, user);
+            } else {
+                log.info("\033[34m{}\033[0m\t: Request {} from {}\u001B[31m denied\u001B[0m", LocalDateTime.now(), i + 1, user);
+            }
+
+            int sleepTimeInMills = (int) (Math.random() * 300) + 100; // 随机间隔 [100, 400）毫秒
+            Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+        }
+
+        log.info("keys: {}, footprint: {} bytes", rateLimiter.size(), rateLimiter.footprintBytes());
+    }
+
+}
@@ -1,65 +1,177 @@
 package rate_limit;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.runtime.HashedWheelTimer;
+import rate_limit.runtime.MpscRingBuffer;
+import rate_limit.runtime.RateLimiterRuntime;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 漏桶算法限流器
+ * <p>
+ * 请求先进入有界的无锁环形队列（漏桶），由 {@link RateLimiterRuntime} 的时间轮按固定速率取出，交给独立的线程池执行：
+ * <ul>
+ *     <li>出桶时刻由 {@link System#nanoTime()} 计算，支持亚毫秒级的间隔；时间轮每次唤醒一次性放出所有到期的请求，
+ *     被延迟唤醒也不会降低速率；桶为空时不积攒额度，恢复流量后不会突发；</li>
+ *     <li>只在桶中有请求时登记出桶任务，空闲的限流器不占用任何定时任务与线程；</li>
+ *     <li>请求在线程池中执行，慢请求不会拖慢出桶节奏，线程池大小决定执行的并发度；</li>
+ *     <li>统计请求的排队时间（入桶到出桶）与执行时间。</li>
+ * </ul>
  */
 @Slf4j
-public class LeakyBucketRateLimiter {
+public class LeakyBucketRateLimiter implements AutoCloseable, Reconfigurable {
 
-    private final int leakRate; // 请求处理速率（每个请求处理的时间间隔，毫秒）
+    private static final int MAX_BATCH = 1024; // 每次最多放出的请求数，避免长时间占用时间轮线程
 
-    private final BlockingQueue<Runnable> bucket; // 请求队列
+    private volatile long leakIntervalNanos; // 相邻两个请求出桶的时间间隔，纳秒，可在运行时调整
+
+    private final MpscRingBuffer<Runnable> bucket; // 请求队列
+
+    private final Executor executor; // 执行请求的线程池
+
+    private final boolean ownsExecutor; // 线程池是否由限流器创建，需随限流器关闭
+
+    private final RateLimiterRuntime runtime; // 执行出桶任务的定时服务
+
+    private final MpscRingBuffer.StampedConsumer<Runnable> dispatcher = this::dispatch; // 避免每次出桶都创建 lambda
+
+    private final AtomicBoolean leaking = new AtomicBoolean(); // 是否已登记出桶任务，同一时刻最多一个
+
+    private long nextLeakAt; // 下一个请求的出桶时刻，只由持有出桶任务的线程访问
+
+    private volatile HashedWheelTimer.Timeout leakTimeout; // 待执行的出桶任务
+
+    private volatile boolean closed; // 是否已关闭
+
+    @Getter
+    private final LatencyHistogram queueTime = new LatencyHistogram(); // 排队时间
+
+    @Getter
+    private final LatencyHistogram executionTime = new LatencyHistogram(); // 执行时间
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标，排队与执行时间一直记录，不受开关控制
 
     /**
-     * 构造函数
+     * 构造函数，创建由限流器管理的线程池（守护线程，随 {@link #close()} 关闭）
      * @param bucketCapacity 漏桶容量
      * @param leakRate 请求处理速率（每个请求处理的时间间隔，毫秒）
-     * @param threadPoolSize 请求队列的线程池大小
+     * @param threadPoolSize 执行请求的线程池大小
+     * @deprecated 每个实例各自创建一个固定大小的线程池，大量漏桶时线程数随之增长；
+     * 请改用 {@link #withVirtualThreads(int, Duration)}，或传入共享线程池的 {@link #LeakyBucketRateLimiter(int, Duration, Executor)}
      */
+    @Deprecated
     public LeakyBucketRateLimiter(int bucketCapacity, int leakRate, int... threadPoolSize) {
-        this.leakRate = leakRate;
-        this.bucket = new LinkedBlockingQueue<>(bucketCapacity);
+        this(bucketCapacity, Duration.ofMillis(leakRate),
+                Executors.newFixedThreadPool(threadPoolSize.length > 0 ? threadPoolSize[0] : 1, LeakyBucketRateLimiter::newWorker),
+                true, RateLimiterRuntime.shared());
+    }
+
+    /**
+     * 构造函数，使用共享的 {@link RateLimiterRuntime}
+     * @param bucketCapacity 漏桶容量
+     * @param leakInterval 相邻两个请求出桶的时间间隔，可精确到纳秒
+     * @param executor 执行请求的线程池，由调用方管理
+     */
+    public LeakyBucketRateLimiter(int bucketCapacity, Duration leakInterval, Executor executor) {
+        this(bucketCapacity, leakInterval, executor, false, RateLimiterRuntime.shared());
+    }
 
-        int poolSize =1; // 默认线程池大小为1
-        if (threadPoolSize.length > 0) {
-            poolSize = threadPoolSize[0];
+    /**
+     * 构造函数，大量动态创建的漏桶应共用同一个线程池
+     * @param bucketCapacity 漏桶容量
+     * @param leakInterval 相邻两个请求出桶的时间间隔，可精确到纳秒
+     * @param executor 执行请求的线程池，由调用方管理
+     * @param runtime 执行出桶任务的定时服务
+     */
+    public LeakyBucketRateLimiter(int bucketCapacity, Duration leakInterval, Executor executor, RateLimiterRuntime runtime) {
+        this(bucketCapacity, leakInterval, executor, false, runtime);
+    }
+
+    private LeakyBucketRateLimiter(int bucketCapacity, Duration leakInterval, Executor executor, boolean ownsExecutor, RateLimiterRuntime runtime) {
+        if (leakInterval.toNanos() <= 0) {
+            throw new IllegalArgumentException("leakInterval must be positive: " + leakInterval);
         }
+        this.leakIntervalNanos = leakInterval.toNanos();
+        this.bucket = new MpscRingBuffer<>(bucketCapacity);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.runtime = runtime;
+        this.nextLeakAt = System.nanoTime();
+        metrics.registerHistogram(RateLimiterMetrics.QUEUE_TIME, queueTime);
+        metrics.registerHistogram(RateLimiterMetrics.EXECUTION_TIME, executionTime);
+        metrics.gauge("queue_size", bucket::size);
+    }
 
-        startConsuming(poolSize); // 启动定期消费请求的线程
+    /**
+     * 创建在虚拟线程中执行请求的漏桶，每个请求一个虚拟线程，不占用平台线程
+     * @param bucketCapacity 漏桶容量
+     * @param leakInterval 相邻两个请求出桶的时间间隔
+     * @return 漏桶限流器
+     */
+    public static LeakyBucketRateLimiter withVirtualThreads(int bucketCapacity, Duration leakInterval) {
+        return new LeakyBucketRateLimiter(bucketCapacity, leakInterval, Executors.newVirtualThreadPerTaskExecutor(), true, RateLimiterRuntime.shared());
     }
 
     /**
-     * 启动请求的定期消费任务
-     * @param threadPoolSize 线程池大小
+     * 放出所有到期的请求；桶中仍有请求时在下一个出桶时刻再次执行，桶空后暂停，由下一次入桶恢复
      */
-    private void startConsuming(int threadPoolSize) {
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(threadPoolSize);
-
-        // 添加 JVM 关闭钩子，确保线程池在程序终止时关闭
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            log.info("Shutting down ScheduledExecutorService...");
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
+    void leak() {
+        long now = System.nanoTime();
+        long leakIntervalNanos = this.leakIntervalNanos;
+        if (now - nextLeakAt >= 0) {
+            long due = Math.min(MAX_BATCH, (now - nextLeakAt) / leakIntervalNanos + 1);
+            int leaked = bucket.drain(dispatcher, (int) due);
+            if (leaked == 0) {
+                nextLeakAt = now; // 桶为空，不积攒额度
+            } else if (leaked < due) {
+                nextLeakAt = now + leakIntervalNanos; // 桶已放空，下一个请求与本次间隔一个周期
+            } else {
+                nextLeakAt += leaked * leakIntervalNanos; // 按理论时刻推进，调度延迟不影响速率
             }
-        }));
-
-        executor.scheduleAtFixedRate(() -> {
-            Runnable request = bucket.poll();
-            if (request != null) {
-                request.run();
+        }
+        if (bucket.isEmpty()) {
+            leaking.set(false);
+            // 暂停前再检查一次：期间入桶的请求可能没能恢复出桶任务
+            if (bucket.isEmpty() || !leaking.compareAndSet(false, true)) {
+                return;
             }
-        }, 0, leakRate, TimeUnit.MILLISECONDS); // 消费间隔
+        }
+        scheduleLeak(nextLeakAt - now);
+    }
 
+    private void scheduleLeak(long delayNanos) {
+        if (closed || runtime.isClosed()) {
+            return;
+        }
+        leakTimeout = runtime.schedule(this::leak, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        if (closed) {
+            leakTimeout.cancel(); // 登记的同时被关闭
+        }
+    }
+
+    private void dispatch(Runnable request, long enqueuedAt) {
+        long dispatchedAt = System.nanoTime();
+        queueTime.record(dispatchedAt - enqueuedAt);
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    request.run();
+                } finally {
+                    executionTime.record(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Request rejected by executor, dropped", e);
+        }
     }
 
     /**
@@ -67,11 +179,85 @@ public class LeakyBucketRateLimiter {
      * @return true 允许通过，false 被限流
      */
     public boolean tryAcquire(Runnable request) {
-        return bucket.offer(request);
+        if (closed) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (!bucket.offer(request, now)) {
+            return metrics.recordAcquire(false);
+        }
+        if (!leaking.get() && leaking.compareAndSet(false, true)) {
+            // 出桶任务已暂停，恢复；空闲期间不积攒额度
+            if (now - nextLeakAt > 0) {
+                nextLeakAt = now;
+            }
+            scheduleLeak(nextLeakAt - now);
+        }
+        return metrics.recordAcquire(true);
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.intervalOr(getLeakInterval()));
+    }
+
+    /**
+     * 调整出桶间隔，不阻塞入桶，桶中的请求保留，之后按新的间隔出桶
+     * <p>
+     * 已登记的出桶任务若尚未执行，则按新的间隔重新登记，调小间隔可立即生效。
+     * @param leakInterval 相邻两个请求出桶的时间间隔，可精确到纳秒
+     */
+    public synchronized void reconfigure(Duration leakInterval) {
+        if (leakInterval.toNanos() <= 0) {
+            throw new IllegalArgumentException("leakInterval must be positive: " + leakInterval);
+        }
+        this.leakIntervalNanos = leakInterval.toNanos();
+        HashedWheelTimer.Timeout timeout = leakTimeout;
+        if (timeout != null && timeout.cancel()) {
+            // 取消成功说明出桶任务尚未执行，由本线程持有并重新登记
+            long now = System.nanoTime();
+            if (nextLeakAt - (now + leakIntervalNanos) > 0) {
+                nextLeakAt = now + leakIntervalNanos;
+            }
+            scheduleLeak(nextLeakAt - now);
+        }
+    }
+
+    public Duration getLeakInterval() {
+        return Duration.ofNanos(leakIntervalNanos);
+    }
+
+    /**
+     * 桶中等待出桶的请求数
+     * @return 请求数
+     */
+    public int getQueueSize() {
+        return bucket.size();
+    }
+
+    /**
+     * 关闭限流器：取消出桶任务，桶中尚未出桶的请求不再执行；线程池由限流器创建时一并关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        HashedWheelTimer.Timeout timeout = leakTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        if (ownsExecutor && executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    static Thread newWorker(Runnable task) {
+        Thread thread = new Thread(task, "leaky-bucket-worker");
+        thread.setDaemon(true); // 不阻止 JVM 退出，不再需要关闭钩子
+        return thread;
     }
 
     public static void main(String[] args) throws InterruptedException {
-        LeakyBucketRateLimiter rateLimiter = new LeakyBucketRateLimiter(5, 500, 2);
+        LeakyBucketRateLimiter rateLimiter = LeakyBucketRateLimiter.withVirtualThreads(5, Duration.ofMillis(500));
 
         // 模拟10个请求
         for (int i = 0; i < 10; i++) {
@@ -96,6 +282,11 @@ public class LeakyBucketRateLimiter {
             int sleepTimeInMills = (int)(Math.random()*300) + 100; // 随机间隔 [100, 400）毫秒
             Thread.sleep(sleepTimeInMills); // 模拟请求间隔
         }
+
+        Thread.sleep(3000);
+        log.info("排队时间：{}", rateLimiter.getQueueTime());
+        log.info("执行时间：{}", rateLimiter.getExecutionTime());
+        rateLimiter.close();
     }
 
 }
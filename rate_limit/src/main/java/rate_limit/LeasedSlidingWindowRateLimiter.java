@@ -0,0 +1,326 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.redis.RedisScript;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static rate_limit.SlidingWindowRateLimiter.ACQUIRE_SCRIPT;
+import static rate_limit.SlidingWindowRateLimiter.keysOf;
+import static rate_limit.SlidingWindowRateLimiter.nextMember;
+
+/**
+ * 租约式分布式滑动窗口限流器
+ * <p>
+ * {@link SlidingWindowRateLimiter} 每放行一个请求都要访问一次 Redis。本限流器每次从 Redis 预支一批许可（租约），
+ * 在本地通过原子计数消耗，用完或租约过期后再预支下一批，Redis 访问量降为原来的 1 / 租约大小：
+ * <ul>
+ *     <li>租约与普通请求使用同一个 Lua 脚本、同一份数据，可与 {@link SlidingWindowRateLimiter} 混用同一个 key；</li>
+ *     <li>租约大小根据本地请求速率自适应：约为租约有效期内预计的请求数，介于 1 与 maxLeaseSize 之间；</li>
+ *     <li>租约过期后未用完的许可在下次预支时归还给 Redis，关闭限流器时归还当前租约；</li>
+ *     <li>Redis 拒绝预支时，在 {@value #DENY_BACKOFF_MILLIS} 毫秒内直接拒绝，不再访问 Redis。</li>
+ * </ul>
+ * 精度：许可在预支时即计入窗口，但可能在之后的租约有效期内才被使用，因此任意窗口内最多多放行
+ * 节点数 × maxLeaseSize 个请求（每个节点同一时刻只持有一个租约），maxLeaseSize 即单节点的超限上界。
+ */
+@Slf4j
+public class LeasedSlidingWindowRateLimiter implements AutoCloseable, Reconfigurable {
+
+    /**
+     * 归还租约中未使用的许可
+     * <p>
+     * KEYS[1]：限流 key（ZSET）；KEYS[2]：窗口内已占用的许可数；
+     * ARGV[1]：租约成员；ARGV[2]：租约的许可数；ARGV[3]：实际使用的许可数。
+     * 租约成员已滑出窗口时无需归还；否则以实际使用的许可数替换原成员（保留原时间戳），并从占用总数中扣除未使用的许可。
+     * 占用总数不存在（被淘汰、旧版本的 key）时不扣除，由下一次获取按 ZSET 重新统计，避免留下没有过期时间的负数。
+     */
+    private static final RedisScript RETURN_SCRIPT = new RedisScript("""
+            local member = ARGV[1] .. ':' .. ARGV[2]
+            local score = redis.call('ZSCORE', KEYS[1], member)
+            if not score then
+                return 0
+            end
+            local unused = tonumber(ARGV[2]) - tonumber(ARGV[3])
+            redis.call('ZREM', KEYS[1], member)
+            if tonumber(ARGV[3]) > 0 then
+                redis.call('ZADD', KEYS[1], score, ARGV[1] .. ':' .. ARGV[3])
+            end
+            if redis.call('EXISTS', KEYS[2]) == 1 then
+                redis.call('DECRBY', KEYS[2], unused)
+            end
+            return unused
+            """);
+
+    private static final long DENY_BACKOFF_MILLIS = 1; // Redis 拒绝预支后，本地直接拒绝的时间
+
+    private static final double RATE_SMOOTHING = 0.5; // 请求速率指数移动平均的平滑系数
+
+    private final UnifiedJedis jedis; // Redis 客户端
+
+    private final String key; // 限流数据的 Redis键名
+
+    private volatile long windowSizeInMilliseconds; // 滑动窗口大小，单位：毫秒，调整时持有 leaseLock
+
+    private volatile int maxRequests; // 窗口内允许通过的最大请求数（所有节点合计），调整时持有 leaseLock
+
+    private final int maxLeaseSize; // 单个租约的最大许可数，即单节点的超限上界
+
+    private final long leaseTtlNanos; // 租约有效期，纳秒
+
+    private final ReentrantLock leaseLock = new ReentrantLock(); // 同一时刻只有一个线程预支租约
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram redisLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 脚本调用耗时
+
+    private volatile Lease lease = Lease.EXPIRED; // 当前租约
+
+    private volatile long deniedUntil = System.nanoTime(); // 在此之前直接拒绝
+
+    private long lastLeaseAt = System.nanoTime(); // 上次预支的时间，受 leaseLock 保护
+
+    private double permitsPerNano; // 本地请求速率的移动平均，受 leaseLock 保护
+
+    /**
+     * 构造函数
+     * @param jedis 线程安全的 Redis 客户端，如 {@link JedisPooled}
+     * @param key Redis 键名，用于存储限流数据
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数（所有节点合计）
+     * @param maxLeaseSize 单个租约的最大许可数，即单节点在一个窗口内最多多放行的请求数
+     * @param leaseTtlInMilliseconds 租约有效期，单位：毫秒，不超过窗口大小
+     */
+    public LeasedSlidingWindowRateLimiter(UnifiedJedis jedis, String key, long windowSizeInMilliseconds, int maxRequests,
+                                          int maxLeaseSize, long leaseTtlInMilliseconds) {
+        if (maxLeaseSize <= 0) {
+            throw new IllegalArgumentException("maxLeaseSize must be positive: " + maxLeaseSize);
+        }
+        if (leaseTtlInMilliseconds <= 0 || leaseTtlInMilliseconds > windowSizeInMilliseconds) {
+            throw new IllegalArgumentException("leaseTtl must be in (0, windowSize]: " + leaseTtlInMilliseconds);
+        }
+        this.jedis = jedis;
+        this.key = key;
+        this.windowSizeInMilliseconds = windowSizeInMilliseconds;
+        this.maxRequests = maxRequests;
+        this.maxLeaseSize = maxLeaseSize;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(leaseTtlInMilliseconds);
+    }
+
+    /**
+     * 尝试获取许可，优先消耗本地租约
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试一次性获取多个许可，当前租约剩余不足时预支一个至少包含 permits 个许可的新租约
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        Lease current = lease;
+        long now = System.nanoTime();
+        if (current.isValid(now) && current.take(permits)) {
+            return metrics.recordAcquire(true);
+        }
+        if (now - deniedUntil < 0) {
+            return metrics.recordAcquire(false);
+        }
+        return metrics.recordAcquire(renew(current, permits));
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(windowSizeInMilliseconds), limits.maxRequestsOr(maxRequests));
+    }
+
+    /**
+     * 调整窗口大小与最大请求数，从下一次预支租约开始生效，当前租约中剩余的许可仍可在有效期内使用；
+     * 同一 key 在各节点上的参数应保持一致
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒，不小于租约有效期
+     * @param maxRequests 窗口内允许通过的最大请求数（所有节点合计）
+     */
+    public void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
+        }
+        if (TimeUnit.MILLISECONDS.toNanos(windowSizeInMilliseconds) < leaseTtlNanos) {
+            throw new IllegalArgumentException("windowSize must not be shorter than leaseTtl: " + windowSizeInMilliseconds);
+        }
+        leaseLock.lock();
+        try {
+            this.windowSizeInMilliseconds = windowSizeInMilliseconds;
+            this.maxRequests = maxRequests;
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    public long getWindowSizeInMilliseconds() {
+        return windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * 预支新的租约，并从中消耗 permits 个许可
+     * @param seen 调用方看到的租约，若已被其他线程替换则先尝试新租约
+     */
+    private boolean renew(Lease seen, int permits) {
+        leaseLock.lock();
+        try {
+            Lease current = lease;
+            long now = System.nanoTime();
+            if (current != seen && current.isValid(now) && current.take(permits)) {
+                return true; // 其他线程已预支新租约
+            }
+            if (now - deniedUntil < 0) {
+                return false;
+            }
+
+            int size = Math.max(permits, nextLeaseSize(current, now));
+            release(current);
+
+            String member = nextMember(System.currentTimeMillis());
+            List<String> args = List.of(String.valueOf(maxRequests), String.valueOf(windowSizeInMilliseconds), member,
+                    String.valueOf(size), String.valueOf(permits));
+            int granted = (int) (long) metrics.time(redisLatency, () -> ACQUIRE_SCRIPT.eval(jedis, keysOf(key), args));
+            lastLeaseAt = now;
+
+            if (granted == 0) {
+                lease = Lease.EXPIRED;
+                deniedUntil = now + TimeUnit.MILLISECONDS.toNanos(DENY_BACKOFF_MILLIS);
+                return false;
+            }
+            Lease next = new Lease(member, granted, now + leaseTtlNanos);
+            lease = next;
+            return next.take(permits);
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    /**
+     * 根据上一个租约的消耗速度估算本地请求速率，租约大小为租约有效期内预计的请求数
+     */
+    private int nextLeaseSize(Lease previous, long now) {
+        long elapsed = Math.max(1, now - lastLeaseAt);
+        double sample = (double) previous.used() / elapsed;
+        permitsPerNano = RATE_SMOOTHING * sample + (1 - RATE_SMOOTHING) * permitsPerNano;
+        long expected = (long) Math.ceil(permitsPerNano * leaseTtlNanos);
+        return (int) Math.max(1, Math.min(maxLeaseSize, expected));
+    }
+
+    /**
+     * 作废租约，并将未使用的许可归还给 Redis
+     */
+    private void release(Lease previous) {
+        int unused = previous.drain();
+        if (unused > 0) {
+            List<String> args = List.of(previous.member, String.valueOf(previous.granted), String.valueOf(previous.granted - unused));
+            metrics.time(redisLatency, () -> RETURN_SCRIPT.eval(jedis, keysOf(key), args));
+        }
+    }
+
+    /**
+     * 归还当前租约中未使用的许可
+     */
+    @Override
+    public void close() {
+        leaseLock.lock();
+        try {
+            release(lease);
+            lease = Lease.EXPIRED;
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    /**
+     * 租约：预支的许可数与本地剩余的许可数
+     */
+    private static final class Lease {
+
+        static final Lease EXPIRED = new Lease("", 0, System.nanoTime());
+
+        final String member; // 租约在 ZSET 中的成员（不含许可数后缀）
+
+        final int granted; // 预支的许可数
+
+        final long expiresAt; // 过期时间，纳秒
+
+        final AtomicInteger remaining; // 剩余的许可数
+
+        Lease(String member, int granted, long expiresAt) {
+            this.member = member;
+            this.granted = granted;
+            this.expiresAt = expiresAt;
+            this.remaining = new AtomicInteger(granted);
+        }
+
+        boolean isValid(long now) {
+            return now - expiresAt < 0;
+        }
+
+        boolean take(int permits) {
+            for (;;) {
+                int current = remaining.get();
+                if (current < permits) {
+                    return false;
+                }
+                if (remaining.compareAndSet(current, current - permits)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 作废租约，返回未使用的许可数；之后的 take 均失败
+         */
+        int drain() {
+            return Math.max(0, remaining.getAndSet(0));
+        }
+
+        int used() {
+            return granted - Math.max(0, remaining.get());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 租约式滑动窗口限流 ==========");
+
+        try (JedisPooled jedis = new JedisPooled("172.23.84.30", 6379, null, "arpen@2025");
+             LeasedSlidingWindowRateLimiter limiter = new LeasedSlidingWindowRateLimiter(jedis, "my_api:leased_rate_limiter",
+                     1000, 3, 2, 200)) {
+
+            for (int i = 0; i < 10; i++) {
+                if (limiter.tryAcquire()) {
+                    log.info("\033[34m{}\033[0m\t: Request {}\u001B[32m allowed\u001B[0m at {}", LocalDateTime.now(), i + 1, System.currentTimeMillis());
+                } else {
+                    log.info("\033[34m{}\033[0m\t: Request {}\u001B[31m denied\u001B[0m at {}", LocalDateTime.now(), i + 1, System.currentTimeMillis());
+                }
+
+                int sleepTimeInMills = (int) (Math.random() * 300) + 100; // 随机间隔 [100, 400）毫秒
+                Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+            }
+        }
+    }
+
+}
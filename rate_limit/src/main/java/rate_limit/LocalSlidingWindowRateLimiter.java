@@ -0,0 +1,249 @@
+package rate_limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static rate_limit.FixedWindowRateLimiter.countOf;
+import static rate_limit.FixedWindowRateLimiter.pack;
+import static rate_limit.FixedWindowRateLimiter.windowOf;
+
+/**
+ * 进程内滑动窗口限流器（滑动窗口计数器）
+ * <p>
+ * {@link SlidingWindowRateLimiter} 为每个请求在 Redis 中保存一条记录，内存随请求数增长，且每次都要访问 Redis。
+ * 本限流器把窗口切分为 subWindows 个子窗口，用环形数组保存每个子窗口的计数（窗口编号与计数打包在一个 long 中），
+ * 内存固定为 subWindows + 1 个 long，tryAcquire 不分配任何对象：
+ * <ul>
+ *     <li>不加权：统计当前子窗口与之前 subWindows - 1 个子窗口的请求数，实际统计范围在 (1 - 1/subWindows) 个窗口到 1 个窗口之间；</li>
+ *     <li>加权：额外统计即将滑出窗口的最早子窗口，按其仍在窗口内的时间比例折算请求数（假设子窗口内请求均匀分布），
+ *     subWindows 为 1 时即“上一窗口按比例 + 当前窗口”的经典近似算法。</li>
+ * </ul>
+ * 所有放行都计入当前子窗口，CAS 当前子窗口即可保证同一子窗口内不多放行，相比固定窗口消除了窗口交界处 2 倍流量的问题。
+ * <p>
+ * 窗口大小与最大请求数可通过 {@link #reconfigure(long, int)} 在运行时调整，各子窗口的计数按比例保留。
+ */
+@Slf4j
+public class LocalSlidingWindowRateLimiter extends AbstractRateLimiter implements Reconfigurable {
+
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    private final int subWindows; // 子窗口数
+
+    private final boolean weighted; // 是否按比例统计即将滑出窗口的子窗口
+
+    private final AtomicLongArray ring; // 环形数组：高 32 位为子窗口编号，低 32 位为该子窗口的请求数
+
+    /**
+     * 构造函数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param subWindows 子窗口数，越多越精确，但每次统计需要读取的计数越多
+     * @param weighted 是否按比例统计即将滑出窗口的子窗口
+     */
+    public LocalSlidingWindowRateLimiter(long windowSizeInMilliseconds, int maxRequests, int subWindows, boolean weighted) {
+        if (subWindows <= 0) {
+            throw new IllegalArgumentException("subWindows must be positive: " + subWindows);
+        }
+        checkLimits(windowSizeInMilliseconds, maxRequests);
+        this.subWindows = subWindows;
+        this.weighted = weighted;
+        this.config = new Config(windowSizeInMilliseconds, maxRequests, subWindowNanos(windowSizeInMilliseconds, subWindows), System.nanoTime());
+        this.ring = new AtomicLongArray(subWindows + 1);
+    }
+
+    /**
+     * 构造函数，默认 10 个子窗口、不加权
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public LocalSlidingWindowRateLimiter(long windowSizeInMilliseconds, int maxRequests) {
+        this(windowSizeInMilliseconds, maxRequests, 10, false);
+    }
+
+    /**
+     * 创建“上一窗口按比例 + 当前窗口”的加权滑动窗口限流器，只保存两个计数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @return 滑动窗口限流器
+     */
+    public static LocalSlidingWindowRateLimiter weighted(long windowSizeInMilliseconds, int maxRequests) {
+        return new LocalSlidingWindowRateLimiter(windowSizeInMilliseconds, maxRequests, 1, true);
+    }
+
+    /**
+     * 尝试一次性获取多个许可
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    @Override
+    protected boolean tryAcquirePermits(int permits) {
+        checkPermits(permits);
+        for (;;) {
+            Config c = config;
+            long elapsed = System.nanoTime() - c.originNanos;
+            long subWindowId = elapsed / c.subWindowNanos;
+            int currentSlot = slot(subWindowId);
+            long current = ring.get(currentSlot);
+            int currentCount = windowOf(current) == (int) subWindowId ? countOf(current) : 0;
+
+            long requests = currentCount + countInWindow(c, subWindowId, elapsed);
+            if (requests > c.maxRequests - permits) {
+                return false; // 被限流
+            }
+            if (ring.compareAndSet(currentSlot, current, pack((int) subWindowId, currentCount + permits))) {
+                return true; // 允许通过
+            }
+        }
+    }
+
+    @Override
+    protected long nanosUntilAvailable(int permits) {
+        Config c = config;
+        long elapsed = System.nanoTime() - c.originNanos;
+        long subWindowId = elapsed / c.subWindowNanos;
+        long excess = requestsIn(subWindowId) + countInWindow(c, subWindowId, elapsed) - c.maxRequests + permits;
+        if (excess <= 0) {
+            return 0;
+        }
+        long untilNextSubWindow = c.subWindowNanos - (elapsed - subWindowId * c.subWindowNanos);
+        long oldest = requestsIn(subWindowId - subWindows);
+        if (weighted && oldest > 0) {
+            // 最早子窗口的折算请求数随时间线性减少，每纳秒减少 oldest / subWindowNanos
+            return Math.min(untilNextSubWindow, multiplyDivide(excess, c.subWindowNanos, oldest, true));
+        }
+        return untilNextSubWindow; // 等最早的子窗口滑出窗口
+    }
+
+    @Override
+    protected int maxPermits() {
+        return config.maxRequests;
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()));
+    }
+
+    /**
+     * 调整窗口大小与最大请求数，不阻塞并发的 tryAcquire
+     * <p>
+     * 各子窗口的计数按新旧上限的比例换算；窗口大小变化时当前子窗口从此刻开始，并沿用原有编号，
+     * 之前的每个子窗口按新的子窗口大小继续计入，即保留最近 subWindows 个子窗口的请求数而不是按时间重新切分。
+     * 调整的瞬间，已读取旧参数的并发请求仍按旧参数判断一次。
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public synchronized void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        checkLimits(windowSizeInMilliseconds, maxRequests);
+        Config old = config;
+        long now = System.nanoTime();
+        long subWindowNanos = subWindowNanos(windowSizeInMilliseconds, subWindows);
+        long origin = subWindowNanos == old.subWindowNanos
+                ? old.originNanos
+                : now - (now - old.originNanos) / old.subWindowNanos * subWindowNanos;
+        config = new Config(windowSizeInMilliseconds, maxRequests, subWindowNanos, origin);
+
+        if (maxRequests != old.maxRequests) {
+            for (int i = 0; i < ring.length(); i++) {
+                long current;
+                do {
+                    current = ring.get(i);
+                } while (countOf(current) != 0
+                        && !ring.compareAndSet(i, current, pack(windowOf(current), rescale(countOf(current), old.maxRequests, maxRequests))));
+            }
+        }
+        signalWaiters();
+    }
+
+    public long getWindowSizeInMilliseconds() {
+        return config.windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return config.maxRequests;
+    }
+
+    /**
+     * 统计当前子窗口之前、仍在窗口内的请求数
+     */
+    private long countInWindow(Config c, long subWindowId, long elapsed) {
+        long requests = 0;
+        for (int i = 1; i < subWindows; i++) {
+            requests += requestsIn(subWindowId - i);
+        }
+        if (weighted) {
+            // 最早的子窗口仍有 (子窗口大小 - 当前子窗口已过去的时间) 落在窗口内
+            long remainingNanos = c.subWindowNanos - (elapsed - subWindowId * c.subWindowNanos);
+            requests += multiplyDivide(requestsIn(subWindowId - subWindows), remainingNanos, c.subWindowNanos, false);
+        }
+        return requests;
+    }
+
+    private long requestsIn(long subWindowId) {
+        long state = ring.get(slot(subWindowId));
+        return windowOf(state) == (int) subWindowId ? countOf(state) : 0;
+    }
+
+    private int slot(long subWindowId) {
+        return (int) Math.floorMod(subWindowId, (long) ring.length());
+    }
+
+    /**
+     * 计算 a * b / divisor（a、b 非负，divisor 为正）
+     * <p>
+     * 窗口以天计时子窗口可达 10^13 纳秒，乘以上亿的请求数就会超出 long；乘积溢出时改用 double 计算，结果超出 long 时取 Long.MAX_VALUE
+     * @param roundUp true 向上取整，false 向下取整
+     */
+    static long multiplyDivide(long a, long b, long divisor, boolean roundUp) {
+        long product = a * b;
+        if (Math.multiplyHigh(a, b) == 0 && product >= 0) {
+            return roundUp ? Math.ceilDiv(product, divisor) : product / divisor;
+        }
+        double quotient = (double) a * b / divisor;
+        return quotient >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) (roundUp ? Math.ceil(quotient) : quotient);
+    }
+
+    private static long subWindowNanos(long windowSizeInMilliseconds, int subWindows) {
+        return Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowSizeInMilliseconds) / subWindows);
+    }
+
+    private static void checkLimits(long windowSizeInMilliseconds, int maxRequests) {
+        if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
+        }
+    }
+
+    /**
+     * 限流参数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param subWindowNanos 子窗口大小，单位：纳秒
+     * @param originNanos 第一个子窗口的起始时间
+     */
+    private record Config(long windowSizeInMilliseconds, int maxRequests, long subWindowNanos, long originNanos) {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 进程内滑动窗口限流 ==========");
+
+        long windowSizeInMilliSeconds = 1000; // 窗口大小，单位：毫秒
+        int maxRequests = 3; // 窗口允许的最大请求数
+
+        LocalSlidingWindowRateLimiter rateLimiter = new LocalSlidingWindowRateLimiter(windowSizeInMilliSeconds, maxRequests, 10, true);
+
+        for (int i = 0; i < 10; i++) {
+            if (rateLimiter.tryAcquire()) {
+                log.info("\033[34m{}\033[0m\t: Request {}\u001B[32m allowed\033[0m", LocalDateTime.now(), i + 1);
+            } else {
+                log.info("\033[34m{}\033[0m\t: Request {}\033[31m denied\033[0m", LocalDateTime.now(), i + 1);
+            }
+
+            int sleepTimeInMills = (int) (Math.random() * 300) + 100; // 随机间隔 [100, 400）毫秒
+            Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package rate_limit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 进程内限流器
+ * <p>
+ * 除立即返回结果的 {@link #tryAcquire()} 外，还支持等待许可：等待者按 FIFO 顺序排队，
+ * 由共享的时间轮在许可预计可用时唤醒，不需要调用方轮询或 sleep。
+ */
+public interface RateLimiter extends AutoCloseable {
+
+    /**
+     * 尝试获取许可，立即返回
+     * @return true 允许通过，false 被限流
+     */
+    boolean tryAcquire();
+
+    /**
+     * 尝试一次性获取多个许可，立即返回；要么全部获取，要么一个都不获取
+     * @param permits 许可数，如按字节数、行数计费时的权重
+     * @return true 允许通过，false 被限流
+     */
+    boolean tryAcquire(int permits);
+
+    /**
+     * 获取许可，最多等待 timeout
+     * <p>
+     * 通过 {@link CompletableFuture#get} 挂起当前线程，不持有监视器锁，在虚拟线程中调用时不会占用载体线程。
+     * @param permits 许可数
+     * @param timeout 最长等待时间，不大于 0 时只尝试一次
+     * @param unit 时间单位
+     * @return true 获取成功，false 超时
+     * @throws InterruptedException 等待期间线程被中断，此时放弃等待
+     * @throws java.util.concurrent.CancellationException 等待期间限流器被关闭
+     */
+    boolean acquire(int permits, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * 异步获取许可，一直等待直到获取成功
+     * @param permits 许可数
+     * @return 获取成功后完成的 Future，取消 Future 即放弃等待
+     */
+    CompletableFuture<Void> acquireAsync(int permits);
+
+    /**
+     * 异步获取许可，最多等待 timeout
+     * @param permits 许可数
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 获取成功后完成的 Future，超时后以 {@link TimeoutException} 异常完成
+     */
+    CompletableFuture<Void> acquireAsync(int permits, long timeout, TimeUnit unit);
+
+    /**
+     * 关闭限流器，取消登记的定时任务，仍在等待的请求以 {@link java.util.concurrent.CancellationException} 结束
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,51 @@
+package rate_limit;
+
+import java.time.Duration;
+
+/**
+ * 可在运行时调整限流参数的限流器
+ * <p>
+ * {@link rate_limit.autoconfigure.RateLimiterRegistry} 只接受实现了本接口的限流器，配置变化时统一调用 {@link #reconfigure(Limits)}，
+ * 不再按具体类型逐一判断。各限流器只读取与自身算法相关的参数，未设置（null）的参数沿用当前值，其余参数忽略。
+ */
+public interface Reconfigurable {
+
+    /**
+     * 按新参数原地调整，不阻塞并发的 tryAcquire
+     * @param limits 新的限流参数
+     * @throws IllegalArgumentException 参数不合法，限流器保留原参数
+     */
+    void reconfigure(Limits limits);
+
+    /**
+     * 限流参数，未设置的字段为 null
+     * @param capacity 令牌桶容量
+     * @param interval 令牌生成间隔或漏桶出桶间隔
+     * @param window 窗口大小
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param burst GCRA 允许的突发请求数
+     */
+    record Limits(Integer capacity, Duration interval, Duration window, Integer maxRequests, Integer burst) {
+
+        public int capacityOr(int current) {
+            return capacity != null ? capacity : current;
+        }
+
+        public Duration intervalOr(Duration current) {
+            return interval != null ? interval : current;
+        }
+
+        public long windowMillisOr(long current) {
+            return window != null ? window.toMillis() : current;
+        }
+
+        public int maxRequestsOr(int current) {
+            return maxRequests != null ? maxRequests : current;
+        }
+
+        public int burstOr(int current) {
+            return burst != null ? burst : current;
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.redis.RedisScript;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Redis 的 GCRA 限流器
+ * <p>
+ * 与 {@link GcraRateLimiter} 算法相同，每个 key 只保存一个字符串：下一个请求的理论到达时间 TAT（微秒），
+ * 内存为 O(1)，不随窗口内的请求数增长；相比 {@link SlidingWindowRateLimiter} 的 ZSET，
+ * 不需要 ZREMRANGEBYSCORE 清理过期成员，脚本只有一次 GET 与一次 SET。
+ * <p>
+ * 使用 Redis 服务端时间，避免各节点时钟不一致；TAT 早于当前时间后 key 自动过期，空闲的 key 不占内存。
+ */
+@Slf4j
+public class RedisGcraRateLimiter implements Reconfigurable {
+
+    /**
+     * GCRA 脚本
+     * <p>
+     * KEYS[1]：限流 key；ARGV[1]：相邻两个请求的理论间隔（微秒）；ARGV[2]：容忍度（微秒）；ARGV[3]：许可数。
+     * 许可数为 n 时 TAT 一次推进 n 个间隔；放行时返回 0，被限流时返回需要等待的微秒数。
+     * TAT 用 %d 格式化后写入，避免 Lua 把大整数转换为科学计数法而丢失精度。
+     */
+    static final RedisScript GCRA_SCRIPT = new RedisScript("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            local tat = tonumber(redis.call('GET', KEYS[1]) or now)
+            if tat < now then
+                tat = now
+            end
+            local interval = tonumber(ARGV[1])
+            local next_tat = tat + interval * tonumber(ARGV[3])
+            local retry_after = next_tat - interval - now - tonumber(ARGV[2])
+            if retry_after > 0 then
+                return retry_after
+            end
+            redis.call('SET', KEYS[1], string.format('%d', next_tat), 'PX', math.ceil((next_tat - now) / 1000))
+            return 0
+            """);
+
+    private final UnifiedJedis jedis; // Redis 客户端
+
+    private final String key; // 限流数据的 Redis键名
+
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram redisLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 脚本调用耗时
+
+    /**
+     * 构造函数，允许的突发请求数与窗口内的最大请求数相同
+     * @param jedis 线程安全的 Redis 客户端，如 {@link JedisPooled}
+     * @param key Redis 键名
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public RedisGcraRateLimiter(UnifiedJedis jedis, String key, long windowSizeInMilliseconds, int maxRequests) {
+        this(jedis, key, windowSizeInMilliseconds, maxRequests, maxRequests);
+    }
+
+    /**
+     * 构造函数
+     * @param jedis 线程安全的 Redis 客户端，如 {@link JedisPooled}
+     * @param key Redis 键名
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数，决定平均速率
+     * @param burst 允许的突发请求数
+     */
+    public RedisGcraRateLimiter(UnifiedJedis jedis, String key, long windowSizeInMilliseconds, int maxRequests, int burst) {
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests, burst);
+        this.jedis = jedis;
+        this.key = key;
+    }
+
+    /**
+     * 尝试获取许可
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire() {
+        return tryAcquireOrRetryAfter(key) == 0;
+    }
+
+    /**
+     * 尝试一次性获取多个许可
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(int permits) {
+        return tryAcquireOrRetryAfter(key, permits) == 0;
+    }
+
+    /**
+     * 以相同的速率与突发数，尝试获取指定 key 的许可
+     * @param key Redis 键名
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key) {
+        return tryAcquireOrRetryAfter(key) == 0;
+    }
+
+    /**
+     * 尝试获取指定 key 的许可，被限流时返回需要等待的时间
+     * @param key Redis 键名
+     * @return 0 表示允许通过；大于 0 表示被限流，为再次请求前需要等待的纳秒数
+     */
+    public long tryAcquireOrRetryAfter(String key) {
+        return tryAcquireOrRetryAfter(key, 1);
+    }
+
+    /**
+     * 尝试一次性获取指定 key 的多个许可，一次脚本调用完成
+     * @param key Redis 键名
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key, int permits) {
+        return tryAcquireOrRetryAfter(key, permits) == 0;
+    }
+
+    /**
+     * 尝试一次性获取指定 key 的多个许可，被限流时返回需要等待的时间
+     * @param key Redis 键名
+     * @param permits 许可数，超过 burst 的请求永远不会被放行
+     * @return 0 表示允许通过；大于 0 表示被限流，为再次请求前需要等待的纳秒数，permits 超过 burst 时为 Long.MAX_VALUE
+     */
+    public long tryAcquireOrRetryAfter(String key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        Config c = config;
+        if (permits > c.burst) {
+            metrics.recordAcquire(false);
+            return Long.MAX_VALUE;
+        }
+        long retryAfterMicros = (long) metrics.time(redisLatency,
+                () -> GCRA_SCRIPT.eval(jedis, List.of(key), List.of(c.emissionInterval, c.tolerance, String.valueOf(permits))));
+        metrics.recordAcquire(retryAfterMicros == 0);
+        return TimeUnit.MICROSECONDS.toNanos(retryAfterMicros);
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        Config c = config;
+        reconfigure(limits.windowMillisOr(c.windowSizeInMilliseconds), limits.maxRequestsOr(c.maxRequests), limits.burstOr(c.burst));
+    }
+
+    /**
+     * 调整速率与突发数，之后的请求按新参数判断；同一 key 在各节点上的参数应保持一致
+     * <p>
+     * Redis 中的 TAT 不做换算：超前当前时间的部分按新的容忍度判断，调小突发数后已用的额度相对变多，短时间内会更早被限流。
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     * @param burst 允许的突发请求数
+     */
+    public void reconfigure(long windowSizeInMilliseconds, int maxRequests, int burst) {
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests, burst);
+    }
+
+    public long getWindowSizeInMilliseconds() {
+        return config.windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return config.maxRequests;
+    }
+
+    public int getBurst() {
+        return config.burst;
+    }
+
+    /**
+     * 限流参数，预先格式化为脚本参数
+     * @param emissionInterval 相邻两个请求的理论间隔，微秒
+     * @param tolerance 容忍度，微秒
+     */
+    private record Config(long windowSizeInMilliseconds, int maxRequests, int burst, String emissionInterval, String tolerance) {
+
+        static Config of(long windowSizeInMilliseconds, int maxRequests, int burst) {
+            if (windowSizeInMilliseconds <= 0 || maxRequests <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("windowSizeInMilliseconds, maxRequests and burst must be positive");
+            }
+            long emissionIntervalMicros = Math.max(1, TimeUnit.MILLISECONDS.toMicros(windowSizeInMilliseconds) / maxRequests);
+            long toleranceMicros = emissionIntervalMicros * (burst - 1);
+            return new Config(windowSizeInMilliseconds, maxRequests, burst,
+                    String.valueOf(emissionIntervalMicros), String.valueOf(toleranceMicros));
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== Redis GCRA 限流 ==========");
+
+        try (JedisPooled jedis = new JedisPooled("172.23.84.30", 6379, null, "arpen@2025")) {
+            String rateLimiterKey = "my_api:gcra_rate_limiter"; // 主键名
+            RedisGcraRateLimiter limiter = new RedisGcraRateLimiter(jedis, rateLimiterKey, 1000, 3);
+
+            for (int i = 0; i < 10; i++) {
+                long retryAfter = limiter.tryAcquireOrRetryAfter(rateLimiterKey);
+                if (retryAfter == 0) {
+                    log.info("\033[34m{}\033[0m\t: Request {}\u001B[32m allowed\u001B[0m at {}", LocalDateTime.now(), i + 1, System.currentTimeMillis());
+                } else {
+                    log.info("\033[34m{}\033[0m\t: Request {}\u001B[31m denied\u001B[0m, retry after {} ms", LocalDateTime.now(), i + 1,
+                            TimeUnit.NANOSECONDS.toMillis(retryAfter));
+                }
+
+                int sleepTimeInMills = (int) (Math.random() * 300) + 100; // 随机间隔 [100, 400）毫秒
+                Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+            }
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.redis.RedisScript;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 Redis 的多级组合限流器（如 全局 → 租户 → 用户）
+ * <p>
+ * 每一级是一个 {@link SlidingWindowRateLimiter}（提供窗口大小与最大许可数），所有级别在<b>一个</b> Lua 脚本中完成：
+ * 先清理并检查每一级，全部满足后才写入，任意一级不满足时都不写入，无需撤销；
+ * 相比逐级调用，N 级只需一次网络往返，也不会出现上级已扣减、下级被拒绝的情况。
+ * <p>
+ * 数据格式与 {@link SlidingWindowRateLimiter} 相同（ZSET 成员为 “成员:许可数”，占用总数保存在 “key:permits”），
+ * 同一个 key 可以同时被单级限流器与组合限流器使用。
+ * Redis 集群模式下脚本的所有 key 必须位于同一个槽位，请在各级 key 中使用相同的 {hash tag}，如 {tenant-a}:user-1。
+ */
+@Slf4j
+public class RedisHierarchicalRateLimiter {
+
+    /**
+     * 多级滑动窗口限流脚本
+     * <p>
+     * KEYS[2i-1]、KEYS[2i]：第 i 级的限流 key（ZSET）与已占用的许可数，后者不存在（被淘汰、旧版本的 key）时按 ZSET 重新统计；
+     * 与 {@link SlidingWindowRateLimiter#ACQUIRE_SCRIPT} 相同，没有 “:许可数” 后缀的旧成员按 1 个许可计算。
+     * ARGV[1]：本次请求的成员；ARGV[2]：许可数；ARGV[2i+1]、ARGV[2i+2]：第 i 级的最大许可数与窗口大小（毫秒）。
+     * 全部放行时返回 0，否则返回第一个拒绝的级别（从 1 开始）。
+     */
+    static final RedisScript ACQUIRE_SCRIPT = new RedisScript("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local permits = tonumber(ARGV[2])
+            local levels = #KEYS / 2
+            local function permitsOf(member)
+                return tonumber(string.match(member, ':(%d+)$')) or 1
+            end
+            local used = {}
+            for i = 1, levels do
+                local window = tonumber(ARGV[2 * i + 2])
+                local total = redis.call('GET', KEYS[2 * i])
+                local recounted = not total
+                if total then
+                    total = tonumber(total)
+                else
+                    total = 0
+                    for _, member in ipairs(redis.call('ZRANGE', KEYS[2 * i - 1], 0, -1)) do
+                        total = total + permitsOf(member)
+                    end
+                end
+                local expired = redis.call('ZRANGEBYSCORE', KEYS[2 * i - 1], '-inf', now - window)
+                for _, member in ipairs(expired) do
+                    total = total - permitsOf(member)
+                end
+                if #expired > 0 then
+                    redis.call('ZREMRANGEBYSCORE', KEYS[2 * i - 1], '-inf', now - window)
+                end
+                if recounted then
+                    redis.call('SET', KEYS[2 * i], total, 'PX', window)
+                elseif #expired > 0 then
+                    redis.call('SET', KEYS[2 * i], total, 'KEEPTTL')
+                end
+                if total + permits > tonumber(ARGV[2 * i + 1]) then
+                    return i
+                end
+                used[i] = total
+            end
+            local member = ARGV[1] .. ':' .. permits
+            for i = 1, levels do
+                local window = ARGV[2 * i + 2]
+                redis.call('ZADD', KEYS[2 * i - 1], now, member)
+                redis.call('PEXPIRE', KEYS[2 * i - 1], window)
+                redis.call('SET', KEYS[2 * i], used[i] + permits, 'PX', window)
+            end
+            return 0
+            """);
+
+    private final UnifiedJedis jedis; // Redis 客户端
+
+    private final SlidingWindowRateLimiter[] levels; // 各级限流器，从最粗到最细
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram redisLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 脚本调用耗时
+
+    /**
+     * 构造函数
+     * @param levels 各级限流器，从最粗到最细，必须使用同一个 Redis 客户端
+     */
+    public RedisHierarchicalRateLimiter(SlidingWindowRateLimiter... levels) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("at least one level is required");
+        }
+        for (SlidingWindowRateLimiter level : levels) {
+            if (level.jedis() != levels[0].jedis()) {
+                throw new IllegalArgumentException("all levels must share the same Redis client");
+            }
+        }
+        this.jedis = levels[0].jedis();
+        this.levels = levels.clone();
+    }
+
+    /**
+     * 尝试获取所有级别的许可
+     * @param keys 各级的 Redis 键名，与构造函数中的级别一一对应
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String... keys) {
+        return tryAcquireOrDeniedLevel(1, keys) < 0;
+    }
+
+    /**
+     * 尝试一次性获取所有级别的多个许可
+     * @param permits 许可数
+     * @param keys 各级的 Redis 键名
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(int permits, String... keys) {
+        return tryAcquireOrDeniedLevel(permits, keys) < 0;
+    }
+
+    /**
+     * 尝试一次性获取所有级别的多个许可，一次脚本调用完成，被限流时返回拒绝的级别
+     * @param permits 许可数
+     * @param keys 各级的 Redis 键名
+     * @return -1 表示允许通过；否则为第一个拒绝的级别下标，与构造函数中的顺序一致
+     */
+    public int tryAcquireOrDeniedLevel(int permits, String... keys) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        if (keys.length != levels.length) {
+            throw new IllegalArgumentException("expected " + levels.length + " keys, got " + keys.length);
+        }
+        List<String> scriptKeys = new ArrayList<>(levels.length * 2);
+        List<String> args = new ArrayList<>(levels.length * 2 + 2);
+        args.add(SlidingWindowRateLimiter.nextMember(System.currentTimeMillis()));
+        args.add(String.valueOf(permits));
+        for (int i = 0; i < levels.length; i++) {
+            scriptKeys.addAll(SlidingWindowRateLimiter.keysOf(keys[i]));
+            args.add(String.valueOf(levels[i].getMaxRequests()));
+            args.add(String.valueOf(levels[i].getWindowSizeInMilliseconds()));
+        }
+        long denied = (long) metrics.time(redisLatency, () -> ACQUIRE_SCRIPT.eval(jedis, scriptKeys, args));
+        metrics.recordAcquire(denied == 0);
+        return (int) denied - 1;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== Redis 多级组合限流 ==========");
+
+        try (JedisPooled jedis = new JedisPooled("172.23.84.30", 6379, null, "arpen@2025")) {
+            RedisHierarchicalRateLimiter rateLimiter = new RedisHierarchicalRateLimiter(
+                    new SlidingWindowRateLimiter(jedis, "my_api", 1000, 5),  // 全局：每秒5个请求
+                    new SlidingWindowRateLimiter(jedis, "tenant", 1000, 3),  // 租户：每秒3个请求
+                    new SlidingWindowRateLimiter(jedis, "user", 1000, 2));   // 用户：每秒2个请求
+
+            String[] levelNames = {"global", "tenant", "user"};
+            String[] users = {"user-1", "user-2", "user-3"};
+            for (int i = 0; i < 15; i++) {
+                String user = users[(int) (Math.random() * users.length)];
+                String tenant = user.equals("user-3") ? "tenant-b" : "tenant-a";
+                int denied = rateLimiter.tryAcquireOrDeniedLevel(1, "my_api:rate_limiter", "my_api:" + tenant, "my_api:" + tenant + ":" + user);
+                if (denied < 0) {
+                    log.info("\033[34m{}\033[0m\t: Request {} from {}/{}\u001B[32m allowed\u001B[0m", LocalDateTime.now(), i + 1, tenant, user);
+                } else {
+                    log.info("\033[34m{}\033[0m\t: Request {} from {}/{}\u001B[31m denied\u001B[0m by {}", LocalDateTime.now(), i + 1, tenant, user, levelNames[denied]);
+                }
+
+                int sleepTimeInMills = (int) (Math.random() * 150) + 50; // 随机间隔 [50, 200）毫秒
+                Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+            }
+        }
+    }
+
+}
@@ -0,0 +1,341 @@
+package rate_limit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.redis.ConsistentHashRing;
+import rate_limit.redis.RedisScript;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static rate_limit.SlidingWindowRateLimiter.ACQUIRE_SCRIPT;
+import static rate_limit.SlidingWindowRateLimiter.keysOf;
+
+/**
+ * 分片的滑动窗口限流器：按一致性哈希把限流 key 分散到多个 Redis 节点
+ * <p>
+ * {@link SlidingWindowRateLimiter} 的所有 key 都在一个 Redis 节点上，该节点的吞吐量就是整个集群限流的上限。
+ * 本限流器为每个节点创建独立的连接池与 {@link SlidingWindowRateLimiter}，用 {@link ConsistentHashRing}（带虚拟节点）选择节点：
+ * <ul>
+ *     <li>同一个 key 总在同一个节点上判断，限流结果与单节点相同；包含 {hash tag} 的 key 按 tag 路由；</li>
+ *     <li>批量检查按节点分组，先在所有节点的管道中写入命令，再由每个节点一个虚拟线程同时发送并读取结果，总耗时约为一次最慢的往返；</li>
+ *     <li>扩容即 {@link #addShard(HostAndPort)}：只有约 1/N 的 key 迁移到新节点，迁移的 key 在新节点上从零计数，
+ *     最多多放行一个窗口的请求；{@link #removeShard(HostAndPort)} 同理。</li>
+ * </ul>
+ * 各进程应使用相同的节点列表（节点名为 “host:port”），否则同一个 key 可能在不同进程中路由到不同节点。
+ */
+@Slf4j
+public class ShardedSlidingWindowRateLimiter implements AutoCloseable, Reconfigurable {
+
+    private final JedisClientConfig clientConfig; // 各节点共用的客户端配置
+
+    private final GenericObjectPoolConfig<Connection> poolConfig; // 每个节点的连接池配置
+
+    private final int virtualNodes; // 每个节点的虚拟节点数
+
+    private volatile ConsistentHashRing<Shard> ring; // 一致性哈希环，增删节点时整体替换
+
+    private volatile long windowSizeInMilliseconds; // 滑动窗口大小，单位：毫秒
+
+    private volatile int maxRequests; // 窗口内允许通过的最大请求数
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 整体的指标，各节点的脚本耗时见 getShardMetrics
+
+    private final LatencyHistogram batchLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 批量检查的耗时
+
+    /**
+     * 构造函数
+     * @param endpoints Redis 节点
+     * @param clientConfig 客户端配置（密码、超时等）
+     * @param poolConfig 每个节点的连接池配置
+     * @param virtualNodes 每个节点的虚拟节点数
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public ShardedSlidingWindowRateLimiter(List<HostAndPort> endpoints, JedisClientConfig clientConfig,
+                                           GenericObjectPoolConfig<Connection> poolConfig, int virtualNodes,
+                                           long windowSizeInMilliseconds, int maxRequests) {
+        if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
+        }
+        this.clientConfig = clientConfig;
+        this.poolConfig = poolConfig;
+        this.virtualNodes = virtualNodes;
+        this.windowSizeInMilliseconds = windowSizeInMilliseconds;
+        this.maxRequests = maxRequests;
+        Map<String, Shard> shards = new LinkedHashMap<>();
+        for (HostAndPort endpoint : endpoints) {
+            shards.put(endpoint.toString(), newShard(endpoint));
+        }
+        this.ring = new ConsistentHashRing<>(shards, virtualNodes);
+        metrics.gauge("shards", () -> ring.nodes().size());
+    }
+
+    /**
+     * 构造函数，默认客户端与连接池配置，每个节点 160 个虚拟节点
+     * @param endpoints Redis 节点
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public ShardedSlidingWindowRateLimiter(List<HostAndPort> endpoints, long windowSizeInMilliseconds, int maxRequests) {
+        this(endpoints, DefaultJedisClientConfig.builder().build(), new GenericObjectPoolConfig<>(), 160,
+                windowSizeInMilliseconds, maxRequests);
+    }
+
+    /**
+     * 尝试获取指定 key 的许可
+     * @param key Redis 键名
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * 尝试一次性获取指定 key 的多个许可，在 key 所属的节点上一次脚本调用完成
+     * @param key Redis 键名
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key, int permits) {
+        return metrics.recordAcquire(ring.get(key).limiter.tryAcquire(key, permits));
+    }
+
+    /**
+     * 批量检查多个 key：按节点分组，每个节点一个管道，写入所有命令后各节点的管道同时发送并读取结果
+     * @param keys Redis 键名列表
+     * @return 与 keys 一一对应的结果，true 允许通过，false 被限流
+     */
+    public boolean[] tryAcquireBatch(List<String> keys) {
+        ConsistentHashRing<Shard> ring = this.ring;
+        Map<Shard, List<Integer>> groups = new IdentityHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            groups.computeIfAbsent(ring.get(keys.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+
+        List<Response<Object>> responses = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<AbstractPipeline> pipelines = new ArrayList<>(groups.size());
+        long startedAt = System.nanoTime();
+        try {
+            for (Map.Entry<Shard, List<Integer>> group : groups.entrySet()) {
+                AbstractPipeline pipeline = group.getKey().jedis.pipelined();
+                pipelines.add(pipeline);
+                for (int index : group.getValue()) {
+                    responses.set(index, ACQUIRE_SCRIPT.eval(pipeline, keysOf(keys.get(index)), group.getKey().limiter.args(1)));
+                }
+            }
+        } finally {
+            closeAll(pipelines);
+        }
+        metrics.recordLatency(batchLatency, System.nanoTime() - startedAt);
+
+        boolean[] allowed = new boolean[keys.size()];
+        for (Map.Entry<Shard, List<Integer>> group : groups.entrySet()) {
+            for (int index : group.getValue()) {
+                try {
+                    allowed[index] = (long) responses.get(index).get() == 1;
+                } catch (JedisDataException e) {
+                    if (!RedisScript.isNoScript(e)) {
+                        throw e;
+                    }
+                    // 该节点未缓存脚本（如刚扩容或重启），单独执行一次，同时载入脚本
+                    allowed[index] = group.getKey().limiter.tryAcquire(keys.get(index), 1);
+                }
+                metrics.recordAcquire(allowed[index]);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * 增加一个 Redis 节点，约 1/N 的 key 迁移到新节点
+     * @param endpoint Redis 节点
+     */
+    public synchronized void addShard(HostAndPort endpoint) {
+        String name = endpoint.toString();
+        if (ring.nodes().containsKey(name)) {
+            return;
+        }
+        ring = ring.withNode(name, newShard(endpoint));
+        log.info("Added rate limiter shard {}, {} shards in total", name, ring.nodes().size());
+    }
+
+    /**
+     * 移除一个 Redis 节点，其上的 key 迁移到其它节点；节点的连接池在移除后关闭，正在进行的调用可能失败
+     * @param endpoint Redis 节点
+     */
+    public synchronized void removeShard(HostAndPort endpoint) {
+        String name = endpoint.toString();
+        Shard shard = ring.nodes().get(name);
+        if (shard == null) {
+            return;
+        }
+        ring = ring.withoutNode(name);
+        shard.jedis.close();
+        log.info("Removed rate limiter shard {}, {} shards in total", name, ring.nodes().size());
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()));
+    }
+
+    /**
+     * 调整所有节点的窗口大小与最大请求数
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 窗口内允许通过的最大请求数
+     */
+    public synchronized void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive"); // 避免只调整了部分节点
+        }
+        for (Shard shard : ring.nodes().values()) {
+            shard.limiter.reconfigure(windowSizeInMilliseconds, maxRequests);
+        }
+        this.windowSizeInMilliseconds = windowSizeInMilliseconds;
+        this.maxRequests = maxRequests;
+    }
+
+    public long getWindowSizeInMilliseconds() {
+        return windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * @param key Redis 键名
+     * @return key 所属节点的名称（host:port）
+     */
+    public String shardOf(String key) {
+        return ring.get(key).name;
+    }
+
+    /**
+     * @return 节点名称 → 该节点的指标（单个 key 的脚本耗时等）
+     */
+    public Map<String, RateLimiterMetrics> getShardMetrics() {
+        Map<String, RateLimiterMetrics> shardMetrics = new LinkedHashMap<>();
+        ring.nodes().forEach((name, shard) -> shardMetrics.put(name, shard.limiter.getMetrics()));
+        return shardMetrics;
+    }
+
+    /**
+     * 关闭所有节点的连接池
+     */
+    @Override
+    public synchronized void close() {
+        for (Shard shard : ring.nodes().values()) {
+            shard.jedis.close();
+        }
+    }
+
+    /**
+     * 同时关闭所有管道（发送缓冲的命令、读取结果并归还连接）：第一个在当前线程，其余每个一个虚拟线程；
+     * Jedis 的管道只在 close/sync 时才发送并等待，依次关闭时总耗时是各节点往返之和。某个节点失败时仍等待其余管道关闭
+     */
+    private static void closeAll(List<AbstractPipeline> pipelines) {
+        RuntimeException[] failures = new RuntimeException[pipelines.size()];
+        List<Thread> threads = new ArrayList<>(Math.max(0, pipelines.size() - 1));
+        for (int i = 1; i < pipelines.size(); i++) {
+            int index = i;
+            threads.add(Thread.startVirtualThread(() -> failures[index] = close(pipelines.get(index))));
+        }
+        if (!pipelines.isEmpty()) {
+            failures[0] = close(pipelines.get(0));
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // 连接仍被管道占用，必须等待关闭完成
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        RuntimeException failure = null;
+        for (RuntimeException e : failures) {
+            if (e == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException close(AbstractPipeline pipeline) {
+        try {
+            pipeline.close();
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private Shard newShard(HostAndPort endpoint) {
+        JedisPooled jedis = new JedisPooled(endpoint, clientConfig, poolConfig);
+        String name = endpoint.toString();
+        return new Shard(name, jedis, new SlidingWindowRateLimiter(jedis, name, windowSizeInMilliseconds, maxRequests));
+    }
+
+    /**
+     * 一个 Redis 节点
+     * @param name 节点名称，host:port
+     * @param jedis 该节点的连接池
+     * @param limiter 该节点上的限流器，只使用指定 key 的接口
+     */
+    private record Shard(String name, JedisPooled jedis, SlidingWindowRateLimiter limiter) {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 分片滑动窗口限流 ==========");
+
+        // 同一台机器上的三个 Redis 进程，如 redis-server --port 6379/6380/6381
+        List<HostAndPort> endpoints = List.of(new HostAndPort("127.0.0.1", 6379), new HostAndPort("127.0.0.1", 6380), new HostAndPort("127.0.0.1", 6381));
+        try (ShardedSlidingWindowRateLimiter rateLimiter = new ShardedSlidingWindowRateLimiter(endpoints, 1000, 3)) {
+            String[] users = {"user-1", "user-2", "user-3", "user-4"};
+            for (int i = 0; i < 15; i++) {
+                String key = "my_api:" + users[(int) (Math.random() * users.length)];
+                if (rateLimiter.tryAcquire(key)) {
+                    log.info("\033[34m{}\033[0m\t: Request {} for {} on {}\u001B[32m allowed\u001B[0m", LocalDateTime.now(), i + 1, key, rateLimiter.shardOf(key));
+                } else {
+                    log.info("\033[34m{}\033[0m\t: Request {} for {} on {}\u001B[31m denied\u001B[0m", LocalDateTime.now(), i + 1, key, rateLimiter.shardOf(key));
+                }
+
+                int sleepTimeInMills = (int) (Math.random() * 150) + 50; // 随机间隔 [50, 200）毫秒
+                Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+            }
+        }
+    }
+
+}
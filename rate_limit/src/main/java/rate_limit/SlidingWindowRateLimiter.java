@@ -1,55 +1,158 @@
 package rate_limit;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import rate_limit.redis.RedisScript;
+import rate_limit.resilience.GlobalRateLimiter;
+import redis.clients.jedis.AbstractPipeline;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 滑动窗口限流器
+ * <p>
+ * 基于 Redis 的 ZSET 实现：每个放行的请求写入一个成员，分值为请求时间戳，统计窗口内的请求数即可判断是否限流。
+ * 限流判断在 Lua 脚本中原子完成，脚本按 SHA1 调用（见 {@link RedisScript}），只在 Redis 未缓存脚本时才发送原文。
+ * 除限流 key 外，还使用 “key:permits” 保存窗口内已占用的许可数，Redis 集群模式下请在 key 中使用 {hash tag}。
+ * <p>
+ * 生产环境应使用 {@link JedisPooled} 等基于连接池、线程安全的客户端，多个线程可共享同一个限流器；
+ * 使用单个 {@link Jedis} 连接构造时，限流器不是线程安全的，也不支持批量接口。
+ * <p>
+ * 窗口大小与最大请求数作为脚本参数传入，可通过 {@link #reconfigure(long, int)} 在运行时调整；
+ * Redis 中的记录由所有节点共享，调整时保持不变，按新的窗口与阈值重新统计。
+ * <p>
+ * Redis 变慢或不可用时，可用 {@link rate_limit.resilience.ResilientRateLimiter} 包装，限制每次调用的耗时并降级为本地限流。
  */
 @Slf4j
-public class SlidingWindowRateLimiter {
+public class SlidingWindowRateLimiter implements GlobalRateLimiter, Reconfigurable {
 
-    private final Jedis jedis; // Redis 客户端
+    /**
+     * 滑动窗口限流脚本
+     * <p>
+     * KEYS[1]：限流 key（ZSET）；KEYS[2]：窗口内已占用的许可数；
+     * ARGV[1]：最大许可数；ARGV[2]：窗口大小（毫秒）；ARGV[3]：本次请求的成员；ARGV[4]：申请的许可数；ARGV[5]：最少需要的许可数。
+     * <p>
+     * 每个成员以 “成员:许可数” 的形式记录一次放行占用的许可数，占用总数单独保存在 KEYS[2] 中，
+     * 滑出窗口的成员在删除时从总数中扣除，因此无论申请多少许可都只写入一个成员。
+     * 可用许可不足 ARGV[5] 时拒绝，否则放行 min(ARGV[4], 可用许可数) 个，返回放行的许可数。
+     * <p>
+     * 使用 Redis 服务端时间，避免各节点时钟不一致；成员全局唯一，同一毫秒内的多个请求不会被合并；
+     * 每次放行后刷新过期时间，空闲的 key 在一个窗口后自动删除。
+     * <p>
+     * 兼容旧版本写入的数据：旧成员为纯时间戳（没有 “:许可数” 后缀），按 1 个许可计；
+     * KEYS[2] 不存在时（旧版本没有该 key，或已过期）由窗口内的成员重新累计，之后按增量维护。
+     */
+    static final RedisScript ACQUIRE_SCRIPT = new RedisScript("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local window = tonumber(ARGV[2])
+            local function permitsOf(member)
+                return tonumber(string.match(member, ':(%d+)$')) or 1
+            end
+            local used = redis.call('GET', KEYS[2])
+            local recounted = not used
+            if used then
+                used = tonumber(used)
+            else
+                used = 0
+                for _, member in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do
+                    used = used + permitsOf(member)
+                end
+            end
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now - window)
+            for _, member in ipairs(expired) do
+                used = used - permitsOf(member)
+            end
+            if #expired > 0 then
+                redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+            end
+            local grant = math.min(tonumber(ARGV[4]), tonumber(ARGV[1]) - used)
+            if grant < tonumber(ARGV[5]) then
+                if recounted then
+                    redis.call('SET', KEYS[2], used, 'PX', window)
+                elseif #expired > 0 then
+                    redis.call('SET', KEYS[2], used, 'KEEPTTL')
+                end
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], now, ARGV[3] .. ':' .. grant)
+            redis.call('PEXPIRE', KEYS[1], window)
+            redis.call('SET', KEYS[2], used + grant, 'PX', window)
+            return grant
+            """);
+
+    private static final String NODE_ID = UUID.randomUUID().toString().substring(0, 8); // 本进程的标识，用于生成唯一成员
+
+    private static final AtomicLong SEQUENCE = new AtomicLong(); // 本进程内的请求序号
+
+    private final UnifiedJedis jedis; // Redis 客户端
 
     private final String key; // 限流数据的 Redis键名
 
-    private final long windowSizeInMilliseconds; // 滑动窗口大小，单位：毫秒
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
 
-    private final int maxRequests; // 允许通过的最大请求数
+    private final LatencyHistogram redisLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 脚本调用耗时
 
     /**
      * 构造函数
      * @param jedis Redis 客户端实例
      * @param key Redis 键名，用于存储限流数据
-     * @param windowSizeInMilliseconds 滑动窗口大小，单位：秒
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
      * @param maxRequests 允许通过的最大请求数
      */
     public SlidingWindowRateLimiter(Jedis jedis, String key, long windowSizeInMilliseconds, int maxRequests) {
+        this(new UnifiedJedis(jedis.getConnection()), key, windowSizeInMilliseconds, maxRequests);
+    }
+
+    /**
+     * 构造函数
+     * @param jedis 线程安全的 Redis 客户端，如 {@link JedisPooled}
+     * @param key Redis 键名，用于存储限流数据
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     */
+    public SlidingWindowRateLimiter(UnifiedJedis jedis, String key, long windowSizeInMilliseconds, int maxRequests) {
         this.jedis = jedis;
         this.key = key;
-        this.windowSizeInMilliseconds = windowSizeInMilliseconds;
-        this.maxRequests = maxRequests;
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests);
     }
 
     /**
-     * 尝试获取许可
+     * 尝试获取许可（非原子操作，仅用于演示）
+     * 查询与写入分为多条命令，高并发下多个请求可能同时通过检查，导致超过限流阈值。
+     * 使用客户端时间且不维护 “key:permits”，因此写入单独的 “key:non_atomic”，不影响 {@link #tryAcquire()} 使用的数据
      * @return true 允许通过，false 被限流
      */
-    public boolean tryAcquire() {
+    public boolean tryAcquireNonAtomic() {
+        Config c = config;
+        String demoKey = key + ":non_atomic"; // 与原子版本分开的 key
         long now = System.currentTimeMillis(); // 当前时间
-        long before = now - windowSizeInMilliseconds; // 窗口开始时间
+        long before = now - c.windowSizeInMilliseconds; // 窗口开始时间
 
         // 移除窗口之前的记录
-        jedis.zremrangeByScore(key, 0, before);
+        jedis.zremrangeByScore(demoKey, 0, before);
 
         // 查询当前窗口内的请求数量
-        long currentRequests = jedis.zcard(key);
+        long currentRequests = jedis.zcard(demoKey);
 
-        if (currentRequests < maxRequests) {
-            // 添加当前请求的时间戳
-            jedis.zadd(key, now, String.valueOf(now));
+        if (currentRequests < c.maxRequests) {
+            // 添加当前请求的时间戳，成员全局唯一
+            jedis.zadd(demoKey, now, nextMember(now));
+            jedis.pexpire(demoKey, c.windowSizeInMilliseconds);
             return true;
         }
 
@@ -61,20 +164,162 @@ public class SlidingWindowRateLimiter {
      * 使用LUA脚本，解决高并发下的原子性问题
      * @return true 允许通过，false 被限流
      */
+    public boolean tryAcquire() {
+        return tryAcquire(key);
+    }
+
+    /**
+     * 尝试获取许可，与 {@link #tryAcquire()} 相同
+     * @return true 允许通过，false 被限流
+     */
     public boolean tryAcquire4Concurrency() {
-        long now = System.currentTimeMillis(); // 当前时间
+        return tryAcquire(key);
+    }
+
+    /**
+     * 以相同的窗口与阈值，尝试获取指定 key 的许可
+     * @param key Redis 键名
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * 尝试一次性获取多个许可，一次脚本调用完成，不论许可数多少都只写入一个成员
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    @Override
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(key, permits);
+    }
+
+    /**
+     * 以相同的窗口与阈值，尝试一次性获取指定 key 的多个许可
+     * @param key Redis 键名
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(String key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        Object result = metrics.time(redisLatency, () -> ACQUIRE_SCRIPT.eval(jedis, keysOf(key), args(permits)));
+        return metrics.recordAcquire((long) result == permits);
+    }
+
+    /**
+     * 以相同的窗口与阈值，在一次网络往返中（管道）尝试获取多个 key 的许可
+     * 需要使用基于连接池的客户端构造限流器
+     * @param keys Redis 键名列表
+     * @return 与 keys 一一对应的结果，true 允许通过，false 被限流
+     */
+    public boolean[] tryAcquireBatch(List<String> keys) {
+        boolean[] allowed = new boolean[keys.size()];
+        List<Integer> pending = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            pending.add(i);
+        }
+
+        // 第一次执行时若 Redis 未缓存脚本，载入后只重试未执行的 key
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<Response<Object>> responses = new ArrayList<>(pending.size());
+            long startedAt = System.nanoTime();
+            try (AbstractPipeline pipeline = jedis.pipelined()) {
+                for (int index : pending) {
+                    responses.add(ACQUIRE_SCRIPT.eval(pipeline, keysOf(keys.get(index)), args(1)));
+                }
+                pipeline.sync();
+            }
+            metrics.recordLatency(redisLatency, System.nanoTime() - startedAt); // 一次管道往返
+
+            List<Integer> noScript = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    allowed[pending.get(i)] = (long) responses.get(i).get() == 1;
+                } catch (JedisDataException e) {
+                    if (!RedisScript.isNoScript(e) || attempt > 0) {
+                        throw e;
+                    }
+                    noScript.add(pending.get(i));
+                }
+            }
+            if (!noScript.isEmpty()) {
+                ACQUIRE_SCRIPT.load(jedis, keys.get(noScript.get(0)));
+            }
+            pending = noScript;
+        }
+        for (boolean result : allowed) {
+            metrics.recordAcquire(result);
+        }
+        return allowed;
+    }
+
+    /**
+     * 脚本参数：申请的许可数与最少需要的许可数相同，即全部获取或全部拒绝
+     */
+    List<String> args(int permits) {
+        Config c = config;
+        String requested = String.valueOf(permits);
+        return List.of(String.valueOf(c.maxRequests), String.valueOf(c.windowSizeInMilliseconds), nextMember(System.currentTimeMillis()), requested, requested);
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()));
+    }
+
+    /**
+     * 调整窗口大小与最大请求数，之后的请求按新参数判断；同一 key 在各节点上的参数应保持一致
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     */
+    public void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        this.config = Config.of(windowSizeInMilliseconds, maxRequests);
+    }
+
+    @Override
+    public long getWindowSizeInMilliseconds() {
+        return config.windowSizeInMilliseconds;
+    }
+
+    @Override
+    public int getMaxRequests() {
+        return config.maxRequests;
+    }
+
+    UnifiedJedis jedis() {
+        return jedis;
+    }
+
+    /**
+     * 限流参数
+     * @param windowSizeInMilliseconds 滑动窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     */
+    private record Config(long windowSizeInMilliseconds, int maxRequests) {
 
-        String luaScript = "local window_start_time = ARGV[1] -ARGV[3] " +
-                " redis.call('ZREMRANGEBYSCORE',KEYS[1],'-inf',window_start_time) " +
-                " local now_request = redis.call('ZCARD',KEYS[1]) " +
-                " if now_request < tonumber(ARGV[2]) then " +
-                " redis.call('ZADD',KEYS[1],ARGV[1],ARGV[1]) " +
-                "     return 1 " +
-                "else " +
-                "      return 0 " +
-                " end ";
-        Object result = jedis.eval(luaScript, 1, key, String.valueOf(now), String.valueOf(maxRequests), String.valueOf(windowSizeInMilliseconds));
-        return (long) result == 1;
+        static Config of(long windowSizeInMilliseconds, int maxRequests) {
+            if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+                throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
+            }
+            return new Config(windowSizeInMilliseconds, maxRequests);
+        }
+    }
+
+    /**
+     * 限流脚本使用的 KEYS：限流 key 与已占用许可数的 key
+     */
+    static List<String> keysOf(String key) {
+        return List.of(key, key + ":permits");
+    }
+
+    /**
+     * 生成全局唯一的 ZSET 成员：时间戳 + 进程标识 + 进程内序号
+     */
+    static String nextMember(long now) {
+        return now + ":" + NODE_ID + ":" + SEQUENCE.incrementAndGet();
     }
 
     public static void main(String[] args) throws InterruptedException {
@@ -0,0 +1,283 @@
+package rate_limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static rate_limit.FixedWindowRateLimiter.countOf;
+import static rate_limit.FixedWindowRateLimiter.pack;
+import static rate_limit.FixedWindowRateLimiter.windowOf;
+
+/**
+ * 分片计数的固定窗口限流器，适用于 64 核以上、大量线程共享同一个限流器的场景
+ * <p>
+ * {@link FixedWindowRateLimiter} 的所有线程都 CAS 同一个 long，核数很多时缓存行在各核之间来回传递，吞吐量反而下降。
+ * 参考 {@link java.util.concurrent.atomic.LongAdder} 的思路，本限流器为每个分片（独占一个缓存行）保存一批本地许可：
+ * <ul>
+ *     <li>线程按线程 ID 映射到分片，优先消耗分片内的本地许可，只竞争该分片的缓存行；</li>
+ *     <li>本地许可用完后，一次从全局计数中预支 chunkSize 个许可，全局计数的竞争降为原来的 1 / chunkSize；</li>
+ *     <li>全局许可耗尽时，从其他分片“借”剩余的本地许可；</li>
+ *     <li>本地许可带有窗口编号，窗口切换后自动作废，不会带入下一个窗口。</li>
+ * </ul>
+ * 精度：全局计数保证每个窗口放行的请求数<b>不超过</b> maxRequests；
+ * 借许可时若恰好与其他线程竞争而未借到，请求会被提前拒绝，每个窗口最多少放行 stripes × (chunkSize - 1) 个请求，
+ * 无竞争时与 {@link FixedWindowRateLimiter} 完全一致。
+ * 一次获取多个许可时，只从单个分片或全局计数中整体扣减，不会把多个分片的零散许可拼在一起。
+ * <p>
+ * 窗口大小与最大请求数可通过 {@link #reconfigure(long, int)} 在运行时调整。
+ */
+@Slf4j
+public class StripedFixedWindowRateLimiter extends AbstractRateLimiter implements Reconfigurable {
+
+    private static final int PADDING = 16; // 每个分片占用 16 个 long（128 字节），避免伪共享
+
+    private static final int DEFAULT_CHUNK_SIZE = 64; // 默认每次预支的许可数
+
+    private volatile Config config; // 限流参数，调整时整体替换
+
+    private final int maxChunkSize; // 每次从全局计数预支的许可数上限
+
+    private final AtomicLong global; // 全局计数：高 32 位为窗口编号，低 32 位为已预支的许可数
+
+    private final AtomicLongArray stripes; // 分片：高 32 位为窗口编号，低 32 位为剩余的本地许可数
+
+    private final int stripeMask; // 分片数 - 1
+
+    /**
+     * 构造函数，分片数取 CPU 核数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     */
+    public StripedFixedWindowRateLimiter(long windowSizeInMilliseconds, int maxRequests) {
+        this(windowSizeInMilliseconds, maxRequests, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 构造函数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     * @param stripes 分片数，向上取 2 的幂
+     * @param chunkSize 每次从全局计数预支的许可数，越大全局竞争越少，但最坏情况下少放行的请求越多
+     */
+    public StripedFixedWindowRateLimiter(long windowSizeInMilliseconds, int maxRequests, int stripes, int chunkSize) {
+        if (stripes <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("stripes and chunkSize must be positive");
+        }
+        checkLimits(windowSizeInMilliseconds, maxRequests);
+        int stripeCount = Integer.highestOneBit(stripes * 2 - 1);
+        this.maxChunkSize = chunkSize;
+        this.global = new AtomicLong(pack(0, 0));
+        this.stripes = new AtomicLongArray(stripeCount * PADDING);
+        this.stripeMask = stripeCount - 1;
+        this.config = newConfig(windowSizeInMilliseconds, maxRequests, System.currentTimeMillis());
+    }
+
+    /**
+     * 尝试一次性获取多个许可
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    @Override
+    protected boolean tryAcquirePermits(int permits) {
+        checkPermits(permits);
+        Config c = config;
+        int windowId = c.windowId(System.currentTimeMillis());
+        int stripe = stripeIndex();
+
+        // 1. 消耗本分片的本地许可
+        if (takeLocal(stripe, windowId, permits)) {
+            return true;
+        }
+
+        // 2. 从全局计数预支一批许可，自己消耗 permits 个，其余放入本分片
+        int leased = lease(c, windowId, permits);
+        if (leased > 0) {
+            if (leased > permits) {
+                giveLocal(stripe, windowId, leased - permits);
+            }
+            return true;
+        }
+
+        // 3. 全局许可已耗尽，从其他分片借剩余的本地许可
+        for (int i = 1; i <= stripeMask; i++) {
+            if (takeLocal((stripe + i * PADDING) & (stripes.length() - 1), windowId, permits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected long nanosUntilAvailable(int permits) {
+        Config c = config;
+        long now = System.currentTimeMillis();
+        long current = global.get();
+        if (windowOf(current) != c.windowId(now) || countOf(current) <= c.maxRequests - permits) {
+            return 0;
+        }
+        // 全局许可已耗尽（分片中可能还有剩余，借不到时等到下一个窗口）
+        long nextWindowStart = c.originTimestamp + ((now - c.originTimestamp) / c.windowSizeInMilliseconds + 1) * c.windowSizeInMilliseconds;
+        return TimeUnit.MILLISECONDS.toNanos(nextWindowStart - now);
+    }
+
+    @Override
+    protected int maxPermits() {
+        return config.maxRequests;
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.windowMillisOr(getWindowSizeInMilliseconds()), limits.maxRequestsOr(getMaxRequests()));
+    }
+
+    /**
+     * 调整窗口大小与最大请求数，不阻塞并发的 tryAcquire
+     * <p>
+     * 先收回各分片中未用完的本地许可，再把当前窗口实际已用的许可按比例换算（同 {@link FixedWindowRateLimiter#reconfigure(long, int)}），
+     * 预支粒度按新的上限重新计算；窗口大小变化时新窗口从此刻开始，并沿用当前窗口的编号。
+     * 调整的瞬间，已读取旧参数的并发请求仍按旧参数判断一次。
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     */
+    public synchronized void reconfigure(long windowSizeInMilliseconds, int maxRequests) {
+        checkLimits(windowSizeInMilliseconds, maxRequests);
+        Config old = config;
+        long now = System.currentTimeMillis();
+        int windowId = old.windowId(now);
+        long origin = windowSizeInMilliseconds == old.windowSizeInMilliseconds
+                ? old.originTimestamp
+                : now - (long) windowId * windowSizeInMilliseconds;
+        config = newConfig(windowSizeInMilliseconds, maxRequests, origin);
+
+        int unused = 0; // 已从全局预支、尚未消耗的本地许可
+        for (int i = 0; i < stripes.length(); i += PADDING) {
+            long current = stripes.getAndSet(i, pack(windowId, 0));
+            if (windowOf(current) == windowId) {
+                unused += countOf(current);
+            }
+        }
+        long current;
+        do {
+            current = global.get();
+            if (windowOf(current) != windowId) {
+                break; // 当前窗口还没有请求
+            }
+        } while (!global.compareAndSet(current,
+                pack(windowId, rescale(Math.max(0, countOf(current) - unused), old.maxRequests, maxRequests))));
+        signalWaiters();
+    }
+
+    public long getWindowSizeInMilliseconds() {
+        return config.windowSizeInMilliseconds;
+    }
+
+    public int getMaxRequests() {
+        return config.maxRequests;
+    }
+
+    private boolean takeLocal(int stripe, int windowId, int permits) {
+        for (;;) {
+            long current = stripes.get(stripe);
+            if (windowOf(current) != windowId || countOf(current) < permits) {
+                return false;
+            }
+            if (stripes.compareAndSet(stripe, current, pack(windowId, countOf(current) - permits))) {
+                return true;
+            }
+        }
+    }
+
+    private void giveLocal(int stripe, int windowId, int permits) {
+        for (;;) {
+            long current = stripes.get(stripe);
+            int remaining = windowOf(current) == windowId ? countOf(current) : 0; // 上个窗口的许可直接作废
+            if (stripes.compareAndSet(stripe, current, pack(windowId, remaining + permits))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从全局计数预支许可，至少 permits 个，不足 chunkSize 时尽量凑满 chunkSize
+     * @return 实际预支到的许可数，0 表示全局许可不足 permits 个
+     */
+    private int lease(Config c, int windowId, int permits) {
+        for (;;) {
+            long current = global.get();
+            int granted = windowOf(current) == windowId ? countOf(current) : 0;
+            int take = Math.min(Math.max(c.chunkSize, permits), c.maxRequests - granted);
+            if (take < permits) {
+                return 0;
+            }
+            if (global.compareAndSet(current, pack(windowId, granted + take))) {
+                return take;
+            }
+        }
+    }
+
+    /**
+     * 线程到分片的映射，返回分片在数组中的下标
+     */
+    private int stripeIndex() {
+        long id = Thread.currentThread().threadId();
+        int h = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return (h & stripeMask) * PADDING;
+    }
+
+    private Config newConfig(long windowSizeInMilliseconds, int maxRequests, long originTimestamp) {
+        // 许可总数较少时缩小预支粒度，避免少数分片占住全部许可
+        int chunkSize = Math.max(1, Math.min(maxChunkSize, maxRequests / ((stripeMask + 1) * 4)));
+        return new Config(windowSizeInMilliseconds, maxRequests, chunkSize, originTimestamp);
+    }
+
+    private static void checkLimits(long windowSizeInMilliseconds, int maxRequests) {
+        if (windowSizeInMilliseconds <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("windowSizeInMilliseconds and maxRequests must be positive");
+        }
+    }
+
+    /**
+     * 限流参数
+     * @param windowSizeInMilliseconds 窗口大小，单位：毫秒
+     * @param maxRequests 允许通过的最大请求数
+     * @param chunkSize 每次从全局计数预支的许可数
+     * @param originTimestamp 第一个窗口的起始时间戳
+     */
+    private record Config(long windowSizeInMilliseconds, int maxRequests, int chunkSize, long originTimestamp) {
+
+        int windowId(long now) {
+            return (int) ((now - originTimestamp) / windowSizeInMilliseconds);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 分片固定窗口限流 ==========");
+
+        int threads = 8;
+        StripedFixedWindowRateLimiter rateLimiter = new StripedFixedWindowRateLimiter(1000, 10_000, threads, 64);
+
+        Thread[] workers = new Thread[threads];
+        int[] allowed = new int[threads];
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    if (rateLimiter.tryAcquire()) {
+                        allowed[index]++;
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += allowed[t];
+        }
+        log.info("\033[34m{}\033[0m\t: {} threads, {} requests\u001B[32m allowed\u001B[0m (limit 10000)", LocalDateTime.now(), threads, total);
+    }
+
+}
@@ -1,91 +1,336 @@
 package rate_limit;
 
 import lombok.extern.slf4j.Slf4j;
+import rate_limit.runtime.HashedWheelTimer;
+import rate_limit.runtime.RateLimiterRuntime;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 令牌桶限流器
+ * <p>
+ * 支持两种补充令牌的方式：
+ * <ul>
+ *     <li>定时补充：在 {@link RateLimiterRuntime} 的时间轮上每隔 refillRate 毫秒放入一个令牌，不占用独立线程；
+ *     桶装满后暂停补充，再次消耗令牌时恢复，空闲的限流器没有任何定时任务；</li>
+ *     <li>惰性补充：不启动任何线程，获取令牌时根据 {@link System#nanoTime()} 的时间差计算当前可用令牌数，
+ *     支持小数及亚毫秒级的生成速率。</li>
+ * </ul>
+ * 容量与生成速率可通过 {@link #reconfigure(int, Duration)} 在运行时调整，桶中的令牌按比例保留。
  */
 @Slf4j
-public class TokenBucketRateLimiter {
+public final class TokenBucketRateLimiter extends AbstractRateLimiter implements Reconfigurable {
 
-    private final int bucketCapacity; // 令牌桶的容量
-
-    private final int refillRate; // 令牌生成速率（个令牌生成的时间间隔，毫秒）
+    private volatile Config config; // 限流参数，调整时整体替换
 
     private AtomicInteger tokens; // 当前令牌数
 
+    private final boolean lazyRefill; // 是否为惰性补充模式
+
+    private final AtomicBoolean refilling; // 定时补充模式下是否已登记补充任务，同一时刻最多一个
+
+    private long nextRefillAt; // 定时补充模式下下一个令牌的生成时刻，只由持有补充任务的线程访问
+
+    private volatile HashedWheelTimer.Timeout refillTimeout; // 定时补充模式下待执行的补充任务
+
     /**
-     * 构造函数
+     * 惰性补充模式的状态：令牌数恰好为 0 的（虚拟）时刻，单位纳秒。
+     * 当前令牌数 = min(bucketCapacity, (now - emptyAt) / refillIntervalNanos)，只需一次 CAS 即可完成计算与扣减。
+     */
+    private final AtomicLong emptyAt;
+
+    /**
+     * 构造函数，使用共享的 {@link RateLimiterRuntime}
      * @param bucketCapacity 令牌桶的容量
      * @param refillRate 令牌生成速率（每个令牌生成的时间间隔，毫秒）
-     * @param threadPoolSize 请求队列的线程池大小
+     * @param threadPoolSize 已不再使用：补充任务在共享的时间轮上执行，保留该参数以兼容原有调用
      */
     public TokenBucketRateLimiter(int bucketCapacity, int refillRate, int... threadPoolSize) {
-        this.bucketCapacity = bucketCapacity;
-        this.refillRate = refillRate;
-        this.tokens = new AtomicInteger(0);
+        this(bucketCapacity, refillRate, RateLimiterRuntime.shared());
+    }
 
-        int poolSize =1; // 默认线程池大小为1
-        if (threadPoolSize.length > 0) {
-            poolSize = threadPoolSize[0];
+    /**
+     * 构造函数
+     * @param bucketCapacity 令牌桶的容量
+     * @param refillRate 令牌生成速率（每个令牌生成的时间间隔，毫秒）
+     * @param runtime 执行补充任务的定时服务
+     */
+    public TokenBucketRateLimiter(int bucketCapacity, int refillRate, RateLimiterRuntime runtime) {
+        super(runtime);
+        if (bucketCapacity <= 0 || refillRate <= 0) {
+            throw new IllegalArgumentException("bucketCapacity and refillRate must be positive");
         }
+        this.config = Config.of(bucketCapacity, Duration.ofMillis(refillRate));
+        this.tokens = new AtomicInteger(0);
+        this.lazyRefill = false;
+        this.emptyAt = null;
+        this.refilling = new AtomicBoolean(true);
+        getMetrics().gauge("available_tokens", this::getAvailableTokens);
 
-        startRefilling(poolSize); // 启动定期生成令牌的线程
+        startRefilling(System.nanoTime()); // 初始令牌数为 0，立即开始补充
     }
 
     /**
-     * 定期为令牌桶添加令牌
-     * @param threadPoolSize 线程池大小
+     * 构造函数（惰性补充模式，不占用任何线程）
+     * @param bucketCapacity 令牌桶的容量
+     * @param refillInterval 每个令牌生成的时间间隔，可精确到纳秒
      */
-    private void startRefilling(int threadPoolSize) {
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(threadPoolSize);
-
-        // 添加 JVM 关闭钩子，确保线程池在程序终止时关闭
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            log.info("Shutting down ScheduledExecutorService...");
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
+    public TokenBucketRateLimiter(int bucketCapacity, Duration refillInterval) {
+        this.config = Config.of(bucketCapacity, refillInterval);
+        this.tokens = null;
+        this.lazyRefill = true;
+        this.emptyAt = new AtomicLong(System.nanoTime()); // 初始令牌数为 0，与定时补充模式保持一致
+        this.refilling = null;
+        getMetrics().gauge("available_tokens", this::getAvailableTokens);
+    }
+
+    /**
+     * 创建惰性补充模式的令牌桶
+     * @param bucketCapacity 令牌桶的容量
+     * @param refillIntervalMillis 每个令牌生成的时间间隔，毫秒，支持小数（如 0.01 表示每 10 微秒一个令牌）
+     * @return 令牌桶限流器
+     */
+    public static TokenBucketRateLimiter lazyRefill(int bucketCapacity, double refillIntervalMillis) {
+        return new TokenBucketRateLimiter(bucketCapacity, Duration.ofNanos(Math.round(refillIntervalMillis * 1_000_000)));
+    }
+
+    /**
+     * 创建惰性补充模式的令牌桶
+     * @param bucketCapacity 令牌桶的容量
+     * @param permitsPerSecond 每秒生成的令牌数，支持小数（如 0.5 表示每 2 秒一个令牌）
+     * @return 令牌桶限流器
+     */
+    public static TokenBucketRateLimiter perSecond(int bucketCapacity, double permitsPerSecond) {
+        return new TokenBucketRateLimiter(bucketCapacity, Duration.ofNanos(Math.round(1_000_000_000 / permitsPerSecond)));
+    }
+
+    /**
+     * 登记补充任务，调用方需已把 refilling 置为 true
+     * @param firstRefillAt 下一个令牌的生成时刻
+     */
+    private void startRefilling(long firstRefillAt) {
+        nextRefillAt = firstRefillAt;
+        scheduleRefill(firstRefillAt - System.nanoTime());
+    }
+
+    private void scheduleRefill(long delayNanos) {
+        if (isClosed() || runtime().isClosed()) {
+            return;
+        }
+        refillTimeout = runtime().schedule(this::refill, delayNanos, TimeUnit.NANOSECONDS);
+        if (isClosed()) {
+            refillTimeout.cancel(); // 登记的同时被关闭
+        }
+    }
+
+    /**
+     * 补充到期的令牌；桶装满后暂停，由下一次成功获取令牌的 {@link #tryAcquirePermits(int)} 恢复
+     */
+    private void refill() {
+        Config c = config;
+        long now = System.nanoTime();
+        long due = Math.max(1, (now - nextRefillAt) / c.refillIntervalNanos + 1); // 时间轮延迟唤醒时补上错过的令牌
+        int added = (int) Math.min(c.bucketCapacity, due);
+        // 与 tryAcquire 并发修改 tokens，需通过 CAS 补充，避免覆盖掉刚被消耗的令牌
+        int currentTokens = tokens.getAndUpdate(current -> (int) Math.min(c.bucketCapacity, (long) current + added));
+        log.debug("新增令牌，当前令牌数：{}", Math.min(c.bucketCapacity, (long) currentTokens + added));
+        nextRefillAt += due * c.refillIntervalNanos;
+
+        if ((long) currentTokens + added >= c.bucketCapacity) {
+            refilling.set(false);
+            // 暂停前再检查一次：期间被消耗的令牌（或调大的容量）可能没能恢复补充
+            if (tokens.get() >= config.bucketCapacity || !refilling.compareAndSet(false, true)) {
+                return;
             }
-        }));
-
-        executor.scheduleAtFixedRate(() -> {
-            int currentTokens = tokens.get();
-            if (currentTokens < bucketCapacity) {
-                int newTokens = Math.min(bucketCapacity, currentTokens + 1);
-                tokens.set(newTokens);
-                System.out.println(LocalDateTime.now() + "\t\t新增令牌，当前令牌数：" + newTokens + "\tat " + System.currentTimeMillis());
+            nextRefillAt = now + c.refillIntervalNanos;
+        }
+        scheduleRefill(nextRefillAt - now);
+    }
+
+    /**
+     * 消耗令牌后，补充任务已暂停时恢复补充，下一个令牌在一个生成间隔后生成
+     */
+    private void resumeRefilling() {
+        if (!refilling.get() && refilling.compareAndSet(false, true)) {
+            startRefilling(System.nanoTime() + config.refillIntervalNanos);
+        }
+    }
+
+    /**
+     * 关闭限流器，取消补充任务
+     */
+    @Override
+    public void close() {
+        super.close();
+        HashedWheelTimer.Timeout timeout = refillTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * 尝试一次性获取多个令牌，令牌不足时一个都不扣减
+     * @param permits 令牌数，超过桶容量的请求永远不会成功
+     * @return 是否成功获取令牌
+     */
+    @Override
+    protected boolean tryAcquirePermits(int permits) {
+        checkPermits(permits);
+        if (permits > config.bucketCapacity) {
+            return false;
+        }
+        if (lazyRefill) {
+            return tryAcquireLazily(permits);
+        }
+
+        // CAS 失败说明令牌被其他线程修改，重新读取后重试，而不是直接判定为被限流
+        int currentTokens;
+        do {
+            currentTokens = tokens.get();
+            if (currentTokens < permits) {
+                return false;
             }
-        }, 0, refillRate, TimeUnit.MILLISECONDS); // 每秒填充令牌
+        } while (!tokens.compareAndSet(currentTokens, currentTokens - permits));
+        resumeRefilling();
+        return true;
     }
 
     /**
-     * 尝试获取令牌
+     * 惰性补充模式下尝试获取令牌
      * @return 是否成功获取令牌
      */
-    public boolean tryAcquire() {
-        int currentTokens = tokens.get();
-        if (currentTokens > 0) {
-            if (tokens.compareAndSet(currentTokens, currentTokens - 1)) {
-                System.out.println(LocalDateTime.now() + "\t\t消耗令牌，剩余令牌数：" + (currentTokens - 1) + "\tat " + System.currentTimeMillis());
+    private boolean tryAcquireLazily(int permits) {
+        for (;;) {
+            Config c = config;
+            long now = System.nanoTime();
+            long current = emptyAt.get();
+            // 桶已装满时，多出的时间不再累积令牌
+            long base = now - current > c.burstNanos ? now - c.burstNanos : current;
+            long next = base + c.costOf(permits);
+            if (next - now > 0) {
+                return false; // 令牌不足
+            }
+            if (emptyAt.compareAndSet(current, next)) {
                 return true;
             }
         }
-        return false;
+    }
+
+    @Override
+    protected long nanosUntilAvailable(int permits) {
+        Config c = config;
+        if (!lazyRefill) {
+            int missing = permits - tokens.get();
+            return missing <= 0 ? 0 : c.refillIntervalNanos * missing; // 每个补充周期新增 1 个令牌
+        }
+        long now = System.nanoTime();
+        long current = emptyAt.get();
+        long base = now - current > c.burstNanos ? now - c.burstNanos : current;
+        return Math.max(0, base + c.costOf(permits) - now);
+    }
+
+    @Override
+    protected int maxPermits() {
+        return config.bucketCapacity;
+    }
+
+    @Override
+    public void reconfigure(Limits limits) {
+        reconfigure(limits.capacityOr(getBucketCapacity()), limits.intervalOr(getRefillInterval()));
+    }
+
+    /**
+     * 调整容量与令牌生成间隔，不阻塞并发的 tryAcquire
+     * <p>
+     * 桶中的令牌按容量比例换算（如容量由 100 调为 50 时，剩余 40 个换算为 20 个），向下取整，调整后不会多放行。
+     * 定时补充模式下，待执行的补充任务按新的间隔重新登记；调整的瞬间，已读取旧参数的并发请求仍按旧参数判断一次。
+     * @param bucketCapacity 令牌桶的容量
+     * @param refillInterval 每个令牌生成的时间间隔，定时补充模式下精度为时间轮的刻度
+     */
+    public synchronized void reconfigure(int bucketCapacity, Duration refillInterval) {
+        Config old = config;
+        Config next = Config.of(bucketCapacity, refillInterval);
+        config = next;
+        if (lazyRefill) {
+            // 令牌数由 now - emptyAt 表示，按“桶内令牌占容量的比例”换算到新的时间轴
+            for (;;) {
+                long now = System.nanoTime();
+                long current = emptyAt.get();
+                double fill = Math.min(1.0, (double) (now - current) / old.burstNanos);
+                if (emptyAt.compareAndSet(current, now - (long) (fill * next.burstNanos))) {
+                    break;
+                }
+            }
+        } else {
+            tokens.getAndUpdate(current -> (int) ((long) current * bucketCapacity / old.bucketCapacity));
+            HashedWheelTimer.Timeout timeout = refillTimeout;
+            if (next.refillIntervalNanos != old.refillIntervalNanos && timeout != null && timeout.cancel()) {
+                // 取消成功说明补充任务尚未执行，由本线程按新的间隔重新登记
+                startRefilling(System.nanoTime() + next.refillIntervalNanos);
+            } else {
+                resumeRefilling(); // 调大容量后桶可能不再是满的
+            }
+        }
+        signalWaiters();
+    }
+
+    public int getBucketCapacity() {
+        return config.bucketCapacity;
+    }
+
+    public Duration getRefillInterval() {
+        return Duration.ofNanos(config.refillIntervalNanos);
+    }
+
+    /**
+     * 当前可用的令牌数
+     * @return 令牌数
+     */
+    public int getAvailableTokens() {
+        if (!lazyRefill) {
+            return tokens.get();
+        }
+        Config c = config;
+        long elapsed = System.nanoTime() - emptyAt.get();
+        return (int) Math.max(0, Math.min(c.bucketCapacity, elapsed / c.refillIntervalNanos));
+    }
+
+    /**
+     * 限流参数
+     * @param bucketCapacity 令牌桶的容量
+     * @param refillIntervalNanos 每个令牌生成的时间间隔，纳秒
+     * @param burstNanos 令牌桶从空到满所需的时间，纳秒
+     */
+    private record Config(int bucketCapacity, long refillIntervalNanos, long burstNanos) {
+
+        static Config of(int bucketCapacity, Duration refillInterval) {
+            if (bucketCapacity <= 0) {
+                throw new IllegalArgumentException("bucketCapacity must be positive: " + bucketCapacity);
+            }
+            long intervalNanos = refillInterval.toNanos();
+            if (intervalNanos <= 0) {
+                throw new IllegalArgumentException("refillInterval must be positive: " + refillInterval);
+            }
+            // 容量与间隔都很大时乘积可能溢出，此时按“永不装满”处理
+            long burstNanos = intervalNanos > Long.MAX_VALUE / 4 / bucketCapacity ? Long.MAX_VALUE / 4 : intervalNanos * bucketCapacity;
+            return new Config(bucketCapacity, intervalNanos, burstNanos);
+        }
+
+        /**
+         * permits 个令牌对应的时长，与 burstNanos 一样在溢出时饱和
+         */
+        long costOf(int permits) {
+            return refillIntervalNanos > Long.MAX_VALUE / 4 / permits ? Long.MAX_VALUE / 4 : refillIntervalNanos * permits;
+        }
     }
 
     public static void main(String[] args) throws InterruptedException {
-        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(10, 500, 2); // 容量为10，每500毫秒生成1个令牌
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(10, 500); // 容量为10，每500毫秒生成1个令牌
 
         // 模拟10个请求
         for (int i = 0; i < 10; i++) {
@@ -0,0 +1,61 @@
+package rate_limit.adaptive;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加性增、乘性减（AIMD，与 TCP Reno 的拥塞控制相同）
+ * <p>
+ * 窗口内有请求超时、被下游拒绝，或平均延迟超过 timeout 时，上限乘以 backoffRatio；
+ * 否则在负载足够时上限加 1。只依赖丢弃信号，不需要估计无负载时的延迟，适合延迟波动大的下游。
+ */
+public class AimdLimit implements LimitAlgorithm {
+
+    private final int initialLimit; // 初始上限
+
+    private final int minLimit; // 最小上限
+
+    private final int maxLimit; // 最大上限
+
+    private final double backoffRatio; // 拥塞时的缩小比例
+
+    private final long timeoutNanos; // 平均延迟超过该值视为拥塞
+
+    public AimdLimit() {
+        this(20, 1, 1000, 0.9, TimeUnit.SECONDS.toNanos(5));
+    }
+
+    /**
+     * 构造函数
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     * @param backoffRatio 拥塞时的缩小比例，(0.5, 1)
+     * @param timeoutNanos 平均延迟超过该值视为拥塞，纳秒
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long timeoutNanos) {
+        if (backoffRatio < 0.5 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in [0.5, 1): " + backoffRatio);
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int limit, Sample sample) {
+        if (sample.dropped() || sample.averageRttNanos() > timeoutNanos) {
+            limit = (int) (limit * backoffRatio);
+        } else if (!sample.isAppLimited(limit)) {
+            limit = limit + 1;
+        }
+        return Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+}
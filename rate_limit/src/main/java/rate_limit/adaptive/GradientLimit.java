@@ -0,0 +1,77 @@
+package rate_limit.adaptive;
+
+/**
+ * 基于延迟梯度的调整（思路同 Netflix concurrency-limits 的 Gradient2）
+ * <p>
+ * 用窗口平均延迟的指数移动平均作为长期延迟 longRtt，与当前窗口的平均延迟 shortRtt 之比为梯度：
+ * 延迟上升时梯度小于 1，上限按比例缩小；延迟平稳时梯度为 1，上限额外增加 sqrt(limit) 的排队余量，持续探测更高的并发。
+ * 不依赖单次最小延迟，对延迟抖动不敏感；长期延迟明显高于当前延迟时向当前延迟衰减，避免下游恢复后迟迟不调大。
+ */
+public class GradientLimit implements LimitAlgorithm {
+
+    private final int initialLimit; // 初始上限
+
+    private final int minLimit; // 最小上限
+
+    private final int maxLimit; // 最大上限
+
+    private final double smoothing; // 新上限的权重，越小调整越平缓
+
+    private final double longRttWeight; // 长期延迟的移动平均中当前窗口的权重
+
+    private double longRtt; // 长期延迟，纳秒
+
+    private double estimatedLimit; // 未取整的上限
+
+    public GradientLimit() {
+        this(20, 1, 1000, 0.2, 600);
+    }
+
+    /**
+     * 构造函数
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     * @param smoothing 新上限的权重，(0, 1]
+     * @param longWindows 长期延迟覆盖的窗口数
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int longWindows) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.longRttWeight = 2.0 / (longWindows + 1);
+        this.estimatedLimit = initialLimit;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int limit, Sample sample) {
+        double gradient = 0.5; // 有请求被丢弃时直接减半
+        if (sample.samples() > 0) {
+            // 只有丢弃、没有成功请求的窗口没有延迟，不计入长期延迟，否则 longRtt 被拉向 0
+            double shortRtt = sample.averageRttNanos();
+            longRtt = longRtt == 0 ? shortRtt : longRtt * (1 - longRttWeight) + shortRtt * longRttWeight;
+            if (longRtt / shortRtt > 2) {
+                longRtt *= 0.95; // 下游明显变快，长期延迟向当前延迟衰减
+            }
+            if (!sample.dropped()) {
+                if (sample.isAppLimited(limit)) {
+                    return limit;
+                }
+                gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+            }
+        }
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        return (int) estimatedLimit;
+    }
+
+}
@@ -0,0 +1,45 @@
+package rate_limit.adaptive;
+
+/**
+ * 并发上限的调整算法
+ * <p>
+ * {@link rate_limit.AdaptiveConcurrencyLimiter} 把一个采样窗口内的请求汇总为 {@link Sample}，
+ * 每个窗口结束时调用一次 {@link #update}，同一时刻只有一个线程调用，实现类无需考虑并发。
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * 初始的并发上限
+     * @return 并发数
+     */
+    int initialLimit();
+
+    /**
+     * 根据一个窗口的采样结果计算新的并发上限
+     * @param limit 当前的并发上限
+     * @param sample 窗口的采样结果
+     * @return 新的并发上限，由调用方限制在 [1, Integer.MAX_VALUE) 内
+     */
+    int update(int limit, Sample sample);
+
+    /**
+     * 一个采样窗口的汇总
+     * @param averageRttNanos 成功请求的平均往返时间，纳秒
+     * @param minRttNanos 成功请求的最小往返时间，纳秒
+     * @param maxInflight 窗口内请求开始时的最大并发数
+     * @param samples 成功请求数
+     * @param dropped 窗口内是否有请求超时或被下游拒绝
+     */
+    record Sample(long averageRttNanos, long minRttNanos, int maxInflight, int samples, boolean dropped) {
+
+        /**
+         * 并发数远低于上限时，延迟不能反映上限是否合适（应用本身的负载不足），不应继续调大
+         * @param limit 当前的并发上限
+         * @return true 负载不足
+         */
+        public boolean isAppLimited(int limit) {
+            return maxInflight * 2 < limit;
+        }
+    }
+
+}
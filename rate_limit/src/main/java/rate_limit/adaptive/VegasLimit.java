@@ -0,0 +1,83 @@
+package rate_limit.adaptive;
+
+/**
+ * 基于排队延迟估计的调整（TCP Vegas）
+ * <p>
+ * 以观测到的最小延迟 rttNoLoad 作为无排队时的延迟，估计下游的排队请求数 {@code queue = limit × (1 - rttNoLoad / rtt)}：
+ * 排队少于 alpha 时调大上限，多于 beta 时调小（每个窗口消除一半的多余排队），其间保持不变；alpha、beta 随上限按 log10 增长。
+ * 下游变快或变慢后 rttNoLoad 可能过时，每隔 probeWindows 个窗口重新测量一次。
+ */
+public class VegasLimit implements LimitAlgorithm {
+
+    private final int initialLimit; // 初始上限
+
+    private final int maxLimit; // 最大上限
+
+    private final int alphaFactor; // 排队数低于 alphaFactor × log10(limit) 时调大
+
+    private final int betaFactor; // 排队数高于 betaFactor × log10(limit) 时调小
+
+    private final int probeWindows; // 每隔多少个窗口重新测量 rttNoLoad
+
+    private long rttNoLoad; // 无排队时的延迟估计，纳秒
+
+    private int windows; // 距上次重新测量经过的窗口数
+
+    public VegasLimit() {
+        this(20, 1000, 3, 6, 100);
+    }
+
+    /**
+     * 构造函数
+     * @param initialLimit 初始上限
+     * @param maxLimit 最大上限
+     * @param alphaFactor 排队数低于 alphaFactor × log10(limit) 时调大
+     * @param betaFactor 排队数高于 betaFactor × log10(limit) 时调小
+     * @param probeWindows 每隔多少个窗口重新测量无排队时的延迟
+     */
+    public VegasLimit(int initialLimit, int maxLimit, int alphaFactor, int betaFactor, int probeWindows) {
+        if (alphaFactor >= betaFactor) {
+            throw new IllegalArgumentException("alphaFactor must be less than betaFactor");
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.alphaFactor = alphaFactor;
+        this.betaFactor = betaFactor;
+        this.probeWindows = probeWindows;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int limit, Sample sample) {
+        if (++windows >= probeWindows) {
+            windows = 0;
+            rttNoLoad = 0; // 重新测量
+        }
+        if (sample.samples() > 0 && (rttNoLoad == 0 || sample.minRttNanos() < rttNoLoad)) { // 只有丢弃的窗口没有延迟样本
+            rttNoLoad = sample.minRttNanos();
+            return limit;
+        }
+
+        int log10 = Math.max(1, (int) Math.log10(limit));
+        if (sample.dropped()) {
+            return Math.max(1, limit - log10);
+        }
+        if (sample.isAppLimited(limit)) {
+            return limit;
+        }
+        int queue = (int) Math.ceil(limit * (1 - (double) rttNoLoad / sample.averageRttNanos()));
+        if (queue <= log10) {
+            limit += betaFactor * log10; // 几乎没有排队，快速调大
+        } else if (queue < alphaFactor * log10) {
+            limit += log10;
+        } else if (queue > betaFactor * log10) {
+            limit -= Math.max(log10, (queue - betaFactor * log10) / 2); // 每个窗口消除一半的多余排队
+        }
+        return Math.max(1, Math.min(maxLimit, limit));
+    }
+
+}
@@ -0,0 +1,62 @@
+package rate_limit.autoconfigure;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import rate_limit.Reconfigurable;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 限流参数配置，按名称对应 {@link RateLimiterRegistry} 中登记的限流器
+ * <pre>
+ * rate-limit:
+ *   limiters:
+ *     order-api:          # 令牌桶：容量与令牌生成间隔
+ *       capacity: 100
+ *       interval: 10ms
+ *     login:              # 窗口类限流器：窗口大小与窗口内的最大请求数，GCRA 另有 burst
+ *       window: 1s
+ *       max-requests: 5
+ * </pre>
+ * 未配置的字段沿用限流器当前的值。
+ */
+@Data
+@ConfigurationProperties("rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 限流器名称到限流参数
+     */
+    private Map<String, Limit> limiters = new LinkedHashMap<>();
+
+    @Data
+    public static class Limit {
+
+        private Integer capacity; // 令牌桶容量
+
+        private Duration interval; // 令牌生成间隔或漏桶出桶间隔
+
+        private Duration window; // 窗口大小
+
+        private Integer maxRequests; // 窗口内允许通过的最大请求数
+
+        private Integer burst; // GCRA 允许的突发请求数
+
+        Limit copy() {
+            Limit copy = new Limit();
+            copy.capacity = capacity;
+            copy.interval = interval;
+            copy.window = window;
+            copy.maxRequests = maxRequests;
+            copy.burst = burst;
+            return copy;
+        }
+
+        Reconfigurable.Limits toLimits() {
+            return new Reconfigurable.Limits(capacity, interval, window, maxRequests, burst);
+        }
+    }
+
+}
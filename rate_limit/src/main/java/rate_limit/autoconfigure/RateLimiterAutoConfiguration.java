@@ -0,0 +1,57 @@
+package rate_limit.autoconfigure;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import rate_limit.runtime.RateLimiterRuntime;
+
+/**
+ * 限流器自动配置
+ * <p>
+ * 注册的 {@link RateLimiterRuntime} Bean 就是 {@link RateLimiterRuntime#shared()}：注入运行时的限流器与使用不带运行时的构造函数
+ * （或在框架内部创建）的限流器共用同一个时间轮线程，进程内不会出现第二个。共享实例由守护线程驱动、随 JVM 退出，容器关闭时不关闭它，
+ * 限流器 Bean 声明 {@code destroyMethod = "close"} 后由容器关闭，取消各自登记的任务，时间轮上不再有残留的工作。
+ * 需要随容器启停的独立运行时，可自行声明 {@code RateLimiterRuntime} Bean，此时所有限流器都应通过构造参数注入它。
+ * <p>
+ * 限流器登记到 {@link RateLimiterRegistry} 后，其参数由 {@code rate-limit.limiters.<name>.*} 配置，配置刷新时原地调整。
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimiterAutoConfiguration {
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnMissingBean
+    public RateLimiterRuntime rateLimiterRuntime() {
+        return RateLimiterRuntime.shared(); // 共享实例不能关闭
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimiterRegistry rateLimiterRegistry(RateLimitProperties properties, Environment environment) {
+        return new RateLimiterRegistry(properties, environment);
+    }
+
+    /**
+     * 存在 spring-cloud-context 时，配置中心刷新后重新绑定 {@code rate-limit.*}
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(EnvironmentChangeEvent.class)
+    static class RefreshConfiguration {
+
+        @Bean
+        public ApplicationListener<EnvironmentChangeEvent> rateLimiterRefreshListener(RateLimiterRegistry registry) {
+            return event -> {
+                if (event.getKeys().stream().anyMatch(key -> key.startsWith("rate-limit."))) {
+                    registry.refresh();
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package rate_limit.autoconfigure;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import rate_limit.Reconfigurable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按名称登记的限流器，根据 {@link RateLimitProperties} 在运行时调整限流参数
+ * <p>
+ * 限流器的状态（令牌、计数、排队中的请求）原地保留并按比例换算，不需要重建实例；
+ * 只接受实现了 {@link Reconfigurable} 的限流器，调整通过 {@link Reconfigurable#reconfigure(Reconfigurable.Limits)} 完成，
+ * 不阻塞并发的 tryAcquire。
+ * <p>
+ * 配置刷新时（Spring Cloud 的 EnvironmentChangeEvent 由 {@link RateLimiterAutoConfiguration} 转发，或手动调用 {@link #refresh()}）
+ * 从 Environment 重新绑定 {@code rate-limit.*}，只调整参数有变化的限流器；参数不合法时记录日志并保留原参数。
+ */
+@Slf4j
+public class RateLimiterRegistry {
+
+    private final Environment environment; // 刷新时重新绑定配置，可为 null
+
+    private final Map<String, Reconfigurable> limiters = new ConcurrentHashMap<>(); // 名称到限流器
+
+    private volatile Map<String, RateLimitProperties.Limit> applied; // 当前生效的配置
+
+    /**
+     * 构造函数
+     * @param properties 初始配置
+     * @param environment 刷新时重新绑定配置的 Environment，为 null 时只能通过 {@link #refresh(RateLimitProperties)} 调整
+     */
+    public RateLimiterRegistry(RateLimitProperties properties, Environment environment) {
+        this.environment = environment;
+        Map<String, RateLimitProperties.Limit> initial = new HashMap<>();
+        properties.getLimiters().forEach((name, limit) -> initial.put(name, limit.copy())); // 配置对象可能被原地重新绑定
+        this.applied = Map.copyOf(initial);
+    }
+
+    /**
+     * 登记限流器，已有对应配置时立即按配置调整
+     * @param name 限流器名称，对应 {@code rate-limit.limiters.<name>}
+     * @param limiter 限流器
+     * @return limiter，便于在 @Bean 方法中直接返回
+     */
+    public <T extends Reconfigurable> T register(String name, T limiter) {
+        limiters.put(name, limiter);
+        RateLimitProperties.Limit limit = applied.get(name);
+        if (limit != null) {
+            apply(name, limiter, limit);
+        }
+        return limiter;
+    }
+
+    /**
+     * 取消登记，之后的配置变化不再影响该限流器
+     * @param name 限流器名称
+     */
+    public void unregister(String name) {
+        limiters.remove(name);
+    }
+
+    /**
+     * 按名称查找限流器
+     * @param name 限流器名称
+     * @return 限流器，未登记时为 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Reconfigurable> T get(String name) {
+        return (T) limiters.get(name);
+    }
+
+    /**
+     * 从 Environment 重新绑定 {@code rate-limit.*} 并调整限流器
+     */
+    public void refresh() {
+        if (environment == null) {
+            return;
+        }
+        refresh(Binder.get(environment).bind("rate-limit", RateLimitProperties.class).orElseGet(RateLimitProperties::new));
+    }
+
+    /**
+     * 按新配置调整参数有变化的限流器，配置中删除的限流器保留当前参数
+     * @param properties 新配置
+     */
+    public synchronized void refresh(RateLimitProperties properties) {
+        Map<String, RateLimitProperties.Limit> next = new HashMap<>(applied);
+        properties.getLimiters().forEach((name, limit) -> {
+            if (Objects.equals(limit, applied.get(name))) {
+                return;
+            }
+            Reconfigurable limiter = limiters.get(name);
+            if (limiter == null || apply(name, limiter, limit)) {
+                next.put(name, limit); // 尚未登记的限流器在登记时使用
+            }
+        });
+        applied = Map.copyOf(next);
+    }
+
+    private static boolean apply(String name, Reconfigurable limiter, RateLimitProperties.Limit limit) {
+        try {
+            limiter.reconfigure(limit.toLimits());
+            log.info("Rate limiter {} reconfigured: {}", name, limit);
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid configuration for rate limiter {}, keeping the current limits: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+}
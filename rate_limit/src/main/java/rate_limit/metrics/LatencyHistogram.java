@@ -0,0 +1,200 @@
+package rate_limit.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图（对数-线性分桶，思路同 HdrHistogram）
+ * <p>
+ * 小于 32 的值各占一个桶；更大的值按最高位所在的 2 的幂分组，每组再等分为 32 个桶，相对误差不超过 1/32（约 3%）。
+ * 覆盖 0 到 Long.MAX_VALUE 纳秒共 1888 个桶，每组计数约 15 KB，可被多个线程并发调用。
+ * <p>
+ * 记录一个值的开销：对应桶的一次 CAS、总数与总和各一次 {@link LongAdder} 累加，以及读取最大值（只有出现新的最大值时才 CAS）。
+ * 延迟相近的请求落在同一个桶上，多线程并发记录时会争用同一个缓存行，因此桶计数与 {@link LongAdder} 一样分段：
+ * 没有竞争时只使用一组计数；第一次 CAS 失败后，各线程按线程 ID 分散到各自的分段（按需分配，最多为 CPU 核数向上取 2 的幂、
+ * 不超过 {@value #MAX_STRIPES} 组），读取时把各分段相加。
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5; // 每组 2^5 个桶
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS; // 1888
+
+    private static final int MAX_STRIPES = 16; // 分段数上限
+
+    private static final int STRIPES = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // 各桶的计数，没有竞争时只使用这一组
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES); // 出现竞争后按线程分散的计数，按需分配
+
+    private volatile boolean contended; // 是否已出现过竞争
+
+    private final LongAdder count = new LongAdder(); // 总记录数
+
+    private final LongAdder sum = new LongAdder(); // 所有值之和
+
+    private final AtomicLong max = new AtomicLong(); // 最大值
+
+    /**
+     * 记录一个值
+     * @param nanos 纳秒数，小于 0 时按 0 记录
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int index = indexOf(value);
+        if (contended || !tryIncrementBase(index)) {
+            stripe().incrementAndGet(index);
+        }
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 其他线程已更新最大值，重新比较
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 所有值之和
+     * @return 纳秒数
+     */
+    public long getTotal() {
+        return sum.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * 百分位数
+     * @param percentile 百分位，0 到 100，如 99.9
+     * @return 该百分位所在桶的上界，纳秒；没有记录时为 0
+     */
+    public long valueAtPercentile(double percentile) {
+        long[] merged = mergedCounts();
+        long total = 0;
+        for (long bucket : merged) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe != null) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    stripe.set(i, 0);
+                }
+            }
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.0fns, p50=%dns, p99=%dns, p99.9=%dns, max=%dns",
+                getCount(), getMean(), valueAtPercentile(50), valueAtPercentile(99), valueAtPercentile(99.9), getMax());
+    }
+
+    /**
+     * 没有竞争时直接累加到基础计数；CAS 失败说明出现竞争，之后所有线程改用分段
+     */
+    private boolean tryIncrementBase(int index) {
+        long current = counts.get(index);
+        if (counts.compareAndSet(index, current, current + 1)) {
+            return true;
+        }
+        contended = true;
+        return false;
+    }
+
+    /**
+     * 当前线程使用的分段，第一次使用时分配
+     */
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().threadId();
+        int s = (int) (id * 0x9E3779B97F4A7C15L >>> 32) & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(s);
+        if (stripe == null) {
+            stripes.compareAndSet(s, null, new AtomicLongArray(BUCKETS));
+            stripe = stripes.get(s);
+        }
+        return stripe;
+    }
+
+    /**
+     * 各桶在所有分段中的计数之和
+     */
+    private long[] mergedCounts() {
+        long[] merged = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            merged[i] = counts.get(i);
+        }
+        if (contended) {
+            for (int s = 0; s < STRIPES; s++) {
+                AtomicLongArray stripe = stripes.get(s);
+                if (stripe != null) {
+                    for (int i = 0; i < BUCKETS; i++) {
+                        merged[i] += stripe.get(i);
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // 最高位，不小于 SUB_BUCKET_BITS
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowest + width - 1;
+    }
+
+}
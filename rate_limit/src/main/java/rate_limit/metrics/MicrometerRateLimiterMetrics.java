@@ -0,0 +1,74 @@
+package rate_limit.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 {@link RateLimiterMetrics} 绑定到 Micrometer
+ * <p>
+ * 所有指标都是函数式的（FunctionCounter、FunctionTimer、Gauge），只在采集时读取限流器的计数，不在热路径上调用 Micrometer。
+ * <ul>
+ *     <li>{@code rate_limiter.requests{result=allowed|denied}}：请求数；</li>
+ *     <li>{@code rate_limiter.<gauge>}：当前值类指标，如 {@code rate_limiter.available_tokens}；</li>
+ *     <li>{@code rate_limiter.<histogram>}：延迟的次数与总时长，另有 {@code rate_limiter.<histogram>.percentile{percentile=0.5|0.99|0.999}}
+ *     与 {@code rate_limiter.<histogram>.max}，单位秒。</li>
+ * </ul>
+ * micrometer-core 为可选依赖，只有使用本类时才需要。
+ */
+public class MicrometerRateLimiterMetrics implements MeterBinder {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final String name; // 限流器名称，作为 limiter 标签
+
+    private final RateLimiterMetrics metrics;
+
+    private final Tags tags; // 附加标签
+
+    /**
+     * 构造函数
+     * @param name 限流器名称
+     * @param metrics 限流器指标
+     * @param tags 附加标签
+     */
+    public MicrometerRateLimiterMetrics(String name, RateLimiterMetrics metrics, Tag... tags) {
+        this.name = name;
+        this.metrics = metrics;
+        this.tags = Tags.of(tags).and("limiter", name);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rate_limiter.requests", metrics, RateLimiterMetrics::getAllowedCount)
+                .tags(tags).tag("result", "allowed").description("Requests allowed by the rate limiter").register(registry);
+        FunctionCounter.builder("rate_limiter.requests", metrics, RateLimiterMetrics::getDeniedCount)
+                .tags(tags).tag("result", "denied").description("Requests denied by the rate limiter").register(registry);
+
+        metrics.gauges().forEach((gauge, supplier) ->
+                Gauge.builder("rate_limiter." + gauge, supplier, s -> s.getAsLong()).tags(tags).register(registry));
+
+        metrics.histograms().forEach((histogramName, histogram) -> {
+            String meterName = "rate_limiter." + histogramName;
+            FunctionTimer.builder(meterName, histogram, LatencyHistogram::getCount, LatencyHistogram::getTotal, TimeUnit.NANOSECONDS)
+                    .tags(tags).register(registry);
+            for (double percentile : PERCENTILES) {
+                Gauge.builder(meterName + ".percentile", histogram, h -> h.valueAtPercentile(percentile * 100) / 1e9)
+                        .tags(tags).tag("percentile", String.valueOf(percentile)).baseUnit("seconds").register(registry);
+            }
+            Gauge.builder(meterName + ".max", histogram, h -> h.getMax() / 1e9).tags(tags).baseUnit("seconds").register(registry);
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "MicrometerRateLimiterMetrics[" + name + "]";
+    }
+
+}
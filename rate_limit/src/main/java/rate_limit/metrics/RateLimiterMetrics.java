@@ -0,0 +1,236 @@
+package rate_limit.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 限流器指标
+ * <p>
+ * 每个限流器持有一个实例，热路径上只做一次 volatile 读与一次 {@link LongAdder} 自增：
+ * LongAdder 在竞争时把计数分散到多个 Cell，多线程同时计数不会争用同一个缓存行。
+ * 延迟类指标使用 {@link LatencyHistogram}（对数-线性分桶），记录一次只需一次原子自增；
+ * 当前值类指标（可用令牌数、队列长度等）以 {@link LongSupplier} 登记，只在导出时读取，不占用热路径。
+ * <p>
+ * 可随时通过 {@link #setEnabled(boolean)} 或 JMX 开关，关闭后计数与直方图不再更新；
+ * 新建限流器的默认开关由系统属性 {@code rate-limit.metrics.enabled} 决定，默认开启。
+ * 导出方式：{@link #registerMBean(String)} 注册到 JMX，或通过 {@link MicrometerRateLimiterMetrics} 绑定到 Micrometer。
+ */
+@Slf4j
+public final class RateLimiterMetrics implements RateLimiterMetricsMXBean {
+
+    public static final String WAIT_TIME = "wait_time"; // 等待许可的时间
+
+    public static final String QUEUE_TIME = "queue_time"; // 漏桶中的排队时间
+
+    public static final String EXECUTION_TIME = "execution_time"; // 漏桶中请求的执行时间
+
+    public static final String REDIS_LATENCY = "redis_latency"; // Redis 调用耗时
+
+    private static volatile boolean enabledByDefault = Boolean.parseBoolean(System.getProperty("rate-limit.metrics.enabled", "true"));
+
+    private volatile boolean enabled = enabledByDefault; // 是否记录指标
+
+    private final LongAdder allowed = new LongAdder(); // 放行的请求数
+
+    private final LongAdder denied = new LongAdder(); // 被限流的请求数
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>(); // 延迟分布
+
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>(); // 当前值类指标
+
+    /**
+     * 之后新建的限流器是否默认记录指标
+     * @param enabled 是否记录
+     */
+    public static void setEnabledByDefault(boolean enabled) {
+        enabledByDefault = enabled;
+    }
+
+    /**
+     * 记录一次获取许可的结果
+     * @param allowed 是否放行
+     * @return allowed，便于在 return 语句中直接使用
+     */
+    public boolean recordAcquire(boolean allowed) {
+        if (enabled) {
+            (allowed ? this.allowed : this.denied).increment();
+        }
+        return allowed;
+    }
+
+    /**
+     * 记录一个延迟
+     * @param histogram 由 {@link #histogram(String)} 取得的直方图
+     * @param nanos 纳秒数
+     */
+    public void recordLatency(LatencyHistogram histogram, long nanos) {
+        if (enabled) {
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * 执行一次调用并记录耗时（如 Redis 脚本），调用抛出异常时同样记录
+     * @param histogram 由 {@link #histogram(String)} 取得的直方图
+     * @param call 调用
+     * @return 调用的返回值
+     */
+    public <T> T time(LatencyHistogram histogram, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        long startedAt = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            histogram.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * 取得或创建延迟直方图，限流器应在构造时取得并保存引用，避免热路径上查表
+     * @param name 直方图名称，如 {@link #WAIT_TIME}
+     * @return 直方图
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * 登记限流器已有的直方图（如漏桶一直记录的排队时间），该直方图不受开关控制
+     * @param name 直方图名称
+     * @param histogram 直方图
+     */
+    public void registerHistogram(String name, LatencyHistogram histogram) {
+        histograms.put(name, histogram);
+    }
+
+    /**
+     * 登记当前值类指标，只在导出时调用
+     * @param name 指标名称，如 available_tokens
+     * @param supplier 读取当前值的函数
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    @Override
+    public long getDeniedCount() {
+        return denied.sum();
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new TreeMap<>();
+        gauges.forEach((name, supplier) -> values.put(name, supplier.getAsLong()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        Map<String, Long> values = new TreeMap<>();
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", (long) histogram.getMean());
+            values.put(name + ".p50", histogram.valueAtPercentile(50));
+            values.put(name + ".p99", histogram.valueAtPercentile(99));
+            values.put(name + ".p99.9", histogram.valueAtPercentile(99.9));
+            values.put(name + ".max", histogram.getMax());
+        });
+        return values;
+    }
+
+    /**
+     * 所有直方图
+     * @return 名称到直方图的只读视图
+     */
+    public Map<String, LatencyHistogram> histograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * 所有当前值类指标
+     * @return 名称到读取函数的只读视图
+     */
+    public Map<String, LongSupplier> gauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+
+    @Override
+    public void reset() {
+        allowed.reset();
+        denied.reset();
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * 注册到平台 MBeanServer，ObjectName 为 {@code rate_limit:type=RateLimiter,name=<name>}
+     * @param name 限流器名称
+     * @return 注册的 ObjectName
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName); // 同名限流器被重建时替换
+            }
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register MBean for rate limiter " + name, e);
+        }
+    }
+
+    /**
+     * 从平台 MBeanServer 注销
+     * @param name 限流器名称
+     */
+    public static void unregisterMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to unregister MBean for rate limiter {}", name, e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName("rate_limit:type=RateLimiter,name=" + ObjectName.quote(name));
+    }
+
+    @Override
+    public String toString() {
+        return "allowed=" + getAllowedCount() + ", denied=" + getDeniedCount() + ", gauges=" + getGauges() + ", latencies=" + getLatencies();
+    }
+
+}
@@ -0,0 +1,35 @@
+package rate_limit.metrics;
+
+import java.util.Map;
+
+/**
+ * 限流器指标的 JMX 接口，见 {@link RateLimiterMetrics#registerMBean(String)}
+ */
+public interface RateLimiterMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getAllowedCount();
+
+    long getDeniedCount();
+
+    /**
+     * 当前值类指标，如可用令牌数、队列长度
+     * @return 指标名称到当前值
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * 延迟分布，键为 “直方图名称.count/mean/p50/p99/p99.9/max”，单位纳秒
+     * @return 指标名称到值
+     */
+    Map<String, Long> getLatencies();
+
+    /**
+     * 清空计数与直方图
+     */
+    void reset();
+
+}
@@ -0,0 +1,153 @@
+package rate_limit.redis;
+
+import redis.clients.jedis.util.JedisClusterHashTag;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一致性哈希环（不可变）
+ * <p>
+ * 每个节点在环上放置 virtualNodes 个虚拟节点（位置为 “节点名#序号” 的 MurmurHash），key 路由到顺时针方向的第一个虚拟节点。
+ * 增加或删除一个节点时，只有约 1/N 的 key 改变归属；虚拟节点让各节点分到的 key 数接近均匀。
+ * <p>
+ * 虚拟节点的位置与节点保存在两个按位置排序的数组中，查找为一次二分查找，不加锁、不分配对象（key 的 UTF-8 编码除外）；
+ * 增删节点返回新的环，调用方替换 volatile 引用即可。
+ * key 中包含 {hash tag} 时只对 tag 计算哈希，如 {tenant-a}:user-1 与 {tenant-a} 总是位于同一个节点。
+ * @param <T> 节点类型
+ */
+public final class ConsistentHashRing<T> {
+
+    private final Map<String, T> nodes; // 节点名 → 节点，保持加入顺序
+
+    private final int virtualNodes; // 每个节点的虚拟节点数
+
+    private final long[] positions; // 虚拟节点在环上的位置，升序
+
+    private final Object[] owners; // 与 positions 一一对应的节点
+
+    /**
+     * 构造函数
+     * @param nodes 节点名 → 节点，节点名决定虚拟节点的位置，应在各进程间保持一致（如 “host:port”）
+     * @param virtualNodes 每个节点的虚拟节点数，越多分布越均匀，常用 100 ~ 200
+     */
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("at least one node is required");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+        this.virtualNodes = virtualNodes;
+
+        long[][] entries = new long[nodes.size() * virtualNodes][]; // {位置, 节点下标}
+        Object[] byIndex = nodes.values().toArray();
+        int i = 0, index = 0;
+        for (String name : nodes.keySet()) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[i++] = new long[]{hash(name + "#" + v), index};
+            }
+            index++;
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.positions = new long[entries.length];
+        this.owners = new Object[entries.length];
+        for (int j = 0; j < entries.length; j++) {
+            positions[j] = entries[j][0];
+            owners[j] = byIndex[(int) entries[j][1]];
+        }
+    }
+
+    /**
+     * 查找 key 所属的节点
+     * @param key 键名
+     * @return 节点
+     */
+    @SuppressWarnings("unchecked")
+    public T get(String key) {
+        long hash = hash(JedisClusterHashTag.getHashTag(key));
+        int i = Arrays.binarySearch(positions, hash);
+        if (i < 0) {
+            i = -i - 1; // 顺时针方向的第一个虚拟节点
+            if (i == positions.length) {
+                i = 0; // 环绕到起点
+            }
+        }
+        return (T) owners[i];
+    }
+
+    /**
+     * @param name 节点名
+     * @param node 节点
+     * @return 增加（或替换）一个节点后的新环
+     */
+    public ConsistentHashRing<T> withNode(String name, T node) {
+        Map<String, T> copy = new LinkedHashMap<>(nodes);
+        copy.put(name, node);
+        return new ConsistentHashRing<>(copy, virtualNodes);
+    }
+
+    /**
+     * @param name 节点名
+     * @return 删除一个节点后的新环
+     */
+    public ConsistentHashRing<T> withoutNode(String name) {
+        Map<String, T> copy = new LinkedHashMap<>(nodes);
+        copy.remove(name);
+        return new ConsistentHashRing<>(copy, virtualNodes);
+    }
+
+    /**
+     * @return 节点名 → 节点（只读）
+     */
+    public Map<String, T> nodes() {
+        return nodes;
+    }
+
+    private static final long MURMUR_SEED = 0x1234ABCD; // 与 Jedis 的 Hashing.MURMUR_HASH 相同，节点位置不变
+
+    private static final long MURMUR_M = 0xc6a4a7935bd1e995L;
+
+    private static final int MURMUR_R = 47;
+
+    /**
+     * MurmurHash64A（小端序），与 Jedis 已弃用的 {@code Hashing.MURMUR_HASH} 结果一致
+     */
+    static long hash(String key) {
+        byte[] data = key.getBytes(StandardCharsets.UTF_8);
+        long h = MURMUR_SEED ^ (data.length * MURMUR_M);
+
+        int blocks = data.length >>> 3;
+        for (int i = 0; i < blocks; i++) {
+            long k = littleEndian(data, i << 3, 8);
+            k *= MURMUR_M;
+            k ^= k >>> MURMUR_R;
+            k *= MURMUR_M;
+            h ^= k;
+            h *= MURMUR_M;
+        }
+        int tail = data.length & 7;
+        if (tail > 0) {
+            h ^= littleEndian(data, blocks << 3, tail);
+            h *= MURMUR_M;
+        }
+
+        h ^= h >>> MURMUR_R;
+        h *= MURMUR_M;
+        h ^= h >>> MURMUR_R;
+        return h;
+    }
+
+    private static long littleEndian(byte[] data, int offset, int length) {
+        long value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFFL);
+        }
+        return value;
+    }
+
+}
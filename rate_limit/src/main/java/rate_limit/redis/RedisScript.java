@@ -0,0 +1,92 @@
+package rate_limit.redis;
+
+import lombok.Getter;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Lua 脚本：按 SHA1 调用（EVALSHA），只在 Redis 中没有缓存该脚本时（NOSCRIPT）才发送脚本原文
+ * <p>
+ * 脚本的 SHA1 在本地计算，无需预先 SCRIPT LOAD；Redis 重启、执行 SCRIPT FLUSH 或切换主从后脚本缓存丢失，
+ * 收到 NOSCRIPT 时改用 EVAL 执行一次，EVAL 会顺带把脚本重新载入缓存，之后的调用继续走 EVALSHA。
+ */
+public class RedisScript {
+
+    private static final String NOSCRIPT = "NOSCRIPT"; // 脚本未缓存时的错误前缀
+
+    @Getter
+    private final String source; // 脚本原文
+
+    @Getter
+    private final String sha1; // 脚本的 SHA1
+
+    public RedisScript(String source) {
+        this.source = source;
+        this.sha1 = sha1Hex(source);
+    }
+
+    /**
+     * 执行脚本
+     * @param jedis Redis 客户端
+     * @param keys 脚本的 KEYS
+     * @param args 脚本的 ARGV
+     * @return 脚本返回值
+     */
+    public Object eval(UnifiedJedis jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return jedis.eval(source, keys, args); // 同时重新载入脚本缓存
+        }
+    }
+
+    /**
+     * 在管道中执行脚本，结果需在管道 sync 后通过 {@link Response#get()} 获取
+     * @param pipeline 管道
+     * @param keys 脚本的 KEYS
+     * @param args 脚本的 ARGV
+     * @return 脚本返回值
+     */
+    public Response<Object> eval(AbstractPipeline pipeline, List<String> keys, List<String> args) {
+        return pipeline.evalsha(sha1, keys, args);
+    }
+
+    /**
+     * 将脚本载入 Redis 的脚本缓存
+     * @param jedis Redis 客户端
+     * @param sampleKey 用于定位节点的任意 key（集群模式下脚本缓存在各节点独立）
+     */
+    public void load(UnifiedJedis jedis, String sampleKey) {
+        jedis.scriptLoad(source, sampleKey);
+    }
+
+    /**
+     * 是否为脚本未缓存的错误
+     * @param e Redis 返回的错误
+     * @return 是否为 NOSCRIPT
+     */
+    public static boolean isNoScript(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith(NOSCRIPT);
+    }
+
+    private static String sha1Hex(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package rate_limit.resilience;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 熔断器
+ * <p>
+ * 三种状态：
+ * <ul>
+ *     <li>CLOSED：正常调用，连续失败 failureThreshold 次后熔断；</li>
+ *     <li>OPEN：熔断，openDuration 内不调用，到期后第一个请求把状态切换为 HALF_OPEN；</li>
+ *     <li>HALF_OPEN：同一时刻只放行一个探测调用，连续成功 halfOpenSuccesses 次后恢复为 CLOSED，任意一次失败重新熔断。</li>
+ * </ul>
+ * 状态与代数（generation，每次状态切换加一）打包在一个 long 中，状态切换只使用 CAS，不加锁；
+ * CLOSED 状态下成功调用只读取失败计数，不产生写竞争。
+ * <p>
+ * {@link #tryAcquirePermission()} 返回获得许可时的状态字作为凭证，结果回调时凭证与当前状态字不一致即为过期结果并被忽略：
+ * 例如 CLOSED 状态下发出、熔断恢复后才超时的调用，不会再计入新一轮的失败次数，也不会让刚恢复的熔断器立即熔断。
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 未获得许可
+     */
+    public static final long NOT_PERMITTED = -1;
+
+    private static final State[] STATES = State.values();
+
+    private static final int STATE_BITS = 2; // 状态字的低 2 位为状态，其余为代数
+
+    private static final long NO_PROBE = -1;
+
+    @Getter
+    private final String name; // 名称，用于日志
+
+    private final int failureThreshold; // 熔断前允许的连续失败次数
+
+    private final long openNanos; // 熔断持续时间
+
+    private final int halfOpenSuccesses; // 恢复前需要的连续探测成功次数
+
+    private final AtomicLong stateWord = new AtomicLong(pack(0, State.CLOSED)); // 代数 << 2 | 状态
+
+    private final AtomicInteger failures = new AtomicInteger(); // CLOSED 状态下的连续失败次数
+
+    private final AtomicInteger successes = new AtomicInteger(); // HALF_OPEN 状态下的连续成功次数
+
+    private final AtomicLong probe = new AtomicLong(NO_PROBE); // HALF_OPEN 状态下进行中的探测调用的凭证，过期的凭证视为空闲
+
+    private volatile long openedAt; // 最近一次熔断的时间
+
+    /**
+     * 构造函数
+     * @param name 名称，用于日志
+     * @param failureThreshold 熔断前允许的连续失败次数
+     * @param openDuration 熔断持续时间，到期后开始探测
+     * @param halfOpenSuccesses 恢复前需要的连续探测成功次数
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, int halfOpenSuccesses) {
+        if (failureThreshold <= 0 || halfOpenSuccesses <= 0) {
+            throw new IllegalArgumentException("failureThreshold and halfOpenSuccesses must be positive");
+        }
+        if (openDuration.isNegative() || openDuration.isZero()) {
+            throw new IllegalArgumentException("openDuration must be positive: " + openDuration);
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenSuccesses = halfOpenSuccesses;
+    }
+
+    /**
+     * 构造函数，连续失败 5 次后熔断 5 秒，探测成功 1 次即恢复
+     * @param name 名称，用于日志
+     */
+    public CircuitBreaker(String name) {
+        this(name, 5, Duration.ofSeconds(5), 1);
+    }
+
+    /**
+     * 是否允许本次调用；允许后必须以返回的凭证调用 {@link #onSuccess(long)}、{@link #onFailure(long)} 或 {@link #onIgnored(long)} 之一
+     * @return 许可凭证，{@link #NOT_PERMITTED} 表示走降级逻辑
+     */
+    public long tryAcquirePermission() {
+        long current = stateWord.get();
+        State state = stateOf(current);
+        if (state == State.CLOSED) {
+            return current;
+        }
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return NOT_PERMITTED;
+            }
+            if (stateWord.compareAndSet(current, next(current, State.HALF_OPEN))) {
+                successes.set(0);
+                log.info("Circuit breaker [{}] is half-open, probing", name);
+            }
+            current = stateWord.get();
+            if (stateOf(current) != State.HALF_OPEN) {
+                return NOT_PERMITTED;
+            }
+        }
+        // HALF_OPEN：只放行一个探测调用；上一代遗留的探测凭证不占用本代的名额
+        long inFlight = probe.get();
+        return inFlight != current && probe.compareAndSet(inFlight, current) ? current : NOT_PERMITTED;
+    }
+
+    /**
+     * 记录一次成功调用
+     * @param permission {@link #tryAcquirePermission()} 返回的凭证
+     */
+    public void onSuccess(long permission) {
+        long current = stateWord.get();
+        if (current == permission) {
+            State state = stateOf(current);
+            if (state == State.CLOSED) {
+                if (failures.get() != 0) {
+                    failures.set(0);
+                }
+            } else if (state == State.HALF_OPEN && successes.incrementAndGet() >= halfOpenSuccesses) {
+                failures.set(0);
+                if (stateWord.compareAndSet(current, next(current, State.CLOSED))) {
+                    log.info("Circuit breaker [{}] is closed", name);
+                }
+            }
+        }
+        releaseProbe(permission);
+    }
+
+    /**
+     * 记录一次失败调用（异常或超时）
+     * @param permission {@link #tryAcquirePermission()} 返回的凭证
+     */
+    public void onFailure(long permission) {
+        long current = stateWord.get();
+        if (current == permission) {
+            State state = stateOf(current);
+            if (state == State.HALF_OPEN || state == State.CLOSED && failures.incrementAndGet() >= failureThreshold) {
+                open(current);
+            }
+        }
+        releaseProbe(permission);
+    }
+
+    /**
+     * 已获得许可的调用未完成、结果不应计入统计时（如调用方线程被中断）释放许可
+     * @param permission {@link #tryAcquirePermission()} 返回的凭证
+     */
+    public void onIgnored(long permission) {
+        releaseProbe(permission);
+    }
+
+    public State getState() {
+        return stateOf(stateWord.get());
+    }
+
+    private void open(long from) {
+        openedAt = System.nanoTime();
+        if (stateWord.compareAndSet(from, next(from, State.OPEN))) {
+            log.warn("Circuit breaker [{}] is open for {} ms", name, openNanos / 1_000_000);
+        }
+    }
+
+    private void releaseProbe(long permission) {
+        if (probe.get() == permission) {
+            probe.compareAndSet(permission, NO_PROBE);
+        }
+    }
+
+    private static long pack(long generation, State state) {
+        return generation << STATE_BITS | state.ordinal();
+    }
+
+    private static long next(long stateWord, State state) {
+        return pack((stateWord >>> STATE_BITS) + 1, state);
+    }
+
+    private static State stateOf(long stateWord) {
+        return STATES[(int) (stateWord & ((1 << STATE_BITS) - 1))];
+    }
+
+}
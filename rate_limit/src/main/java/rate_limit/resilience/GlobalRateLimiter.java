@@ -0,0 +1,27 @@
+package rate_limit.resilience;
+
+/**
+ * 所有节点共享同一份配额的限流器，如基于 Redis 的 {@link rate_limit.SlidingWindowRateLimiter}
+ * <p>
+ * {@link ResilientRateLimiter} 在它不可用时，按窗口大小与最大请求数计算本节点的配额份额。
+ */
+public interface GlobalRateLimiter {
+
+    /**
+     * 尝试一次性获取多个许可，可能因远程调用失败抛出异常
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    boolean tryAcquire(int permits);
+
+    /**
+     * @return 窗口大小，单位：毫秒
+     */
+    long getWindowSizeInMilliseconds();
+
+    /**
+     * @return 窗口内所有节点合计允许通过的最大请求数
+     */
+    int getMaxRequests();
+
+}
@@ -0,0 +1,220 @@
+package rate_limit.resilience;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import rate_limit.LocalSlidingWindowRateLimiter;
+import rate_limit.SlidingWindowRateLimiter;
+import rate_limit.metrics.LatencyHistogram;
+import rate_limit.metrics.RateLimiterMetrics;
+import redis.clients.jedis.JedisPooled;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 容错限流器：远程限流器（如 Redis）变慢或不可用时，降级为按本节点份额限流的进程内限流器
+ * <p>
+ * 直接调用 {@link SlidingWindowRateLimiter} 时，Redis 变慢会让每个请求都承担同样的延迟，Redis 宕机时 tryAcquire 直接抛出异常。
+ * 本限流器：
+ * <ul>
+ *     <li>每次远程调用交给独立的线程池执行，调用方最多等待 latencyBudget，超时或异常都计为一次失败，本次请求改由本地限流器判断；
+ *     线程池已满（同时进行的远程调用过多）时本次请求同样由本地限流器判断，但不计为远程失败；</li>
+ *     <li>连续失败达到阈值后 {@link CircuitBreaker} 熔断，熔断期间不再调用远程，直接按本地限流器判断，不再承担超时等待；</li>
+ *     <li>本地限流器的阈值为全局阈值除以当前节点数（至少为 1），节点数每次降级判断时重新读取，扩缩容后自动调整；</li>
+ *     <li>熔断到期后放行一个探测请求，成功即恢复使用远程限流器（自动回切），失败则继续熔断。</li>
+ * </ul>
+ * 本地限流器只在降级时计数，切换的瞬间不知道全局窗口内已放行的请求，最多多放行一个窗口的份额；
+ * 超时的远程调用仍可能在 Redis 中完成并占用许可，因此降级期间的总流量不会超过全局阈值加一个窗口的份额。
+ * <p>
+ * 远程调用的线程切换会带来微秒级的额外开销，相对 Redis 一次网络往返可以忽略。
+ */
+@Slf4j
+public class ResilientRateLimiter implements AutoCloseable {
+
+    private static final int MAX_REMOTE_CALLS = 64; // 默认线程池中同时进行的远程调用上限，超过时直接降级
+
+    private final GlobalRateLimiter remote; // 远程限流器
+
+    private final IntSupplier nodeCount; // 当前节点数
+
+    private final long latencyBudgetNanos; // 单次远程调用的最长等待时间
+
+    @Getter
+    private final CircuitBreaker circuitBreaker; // 熔断器
+
+    private final Executor executor; // 执行远程调用的线程池
+
+    private final boolean ownsExecutor; // 线程池是否由本限流器创建，关闭时一并关闭
+
+    private final LocalSlidingWindowRateLimiter local; // 降级时使用的本地限流器
+
+    private final LongAdder fallbackCount = new LongAdder(); // 由本地限流器判断的请求数
+
+    @Getter
+    private final RateLimiterMetrics metrics = new RateLimiterMetrics(); // 指标
+
+    private final LatencyHistogram redisLatency = metrics.histogram(RateLimiterMetrics.REDIS_LATENCY); // 成功的远程调用耗时
+
+    /**
+     * 构造函数，连续失败 5 次后熔断 5 秒
+     * @param remote 远程限流器
+     * @param nodeCount 当前节点数，如从注册中心读取的实例数
+     * @param latencyBudget 单次远程调用的最长等待时间
+     */
+    public ResilientRateLimiter(GlobalRateLimiter remote, IntSupplier nodeCount, Duration latencyBudget) {
+        this(remote, nodeCount, latencyBudget, new CircuitBreaker("rate-limiter"), null);
+    }
+
+    /**
+     * 构造函数
+     * @param remote 远程限流器
+     * @param nodeCount 当前节点数，如从注册中心读取的实例数
+     * @param latencyBudget 单次远程调用的最长等待时间
+     * @param circuitBreaker 熔断器
+     * @param executor 执行远程调用的线程池，为 null 时创建最多 64 个守护线程的线程池，调用过多时直接降级
+     */
+    public ResilientRateLimiter(GlobalRateLimiter remote, IntSupplier nodeCount, Duration latencyBudget,
+                                CircuitBreaker circuitBreaker, Executor executor) {
+        if (latencyBudget.isNegative() || latencyBudget.isZero()) {
+            throw new IllegalArgumentException("latencyBudget must be positive: " + latencyBudget);
+        }
+        this.remote = remote;
+        this.nodeCount = nodeCount;
+        this.latencyBudgetNanos = latencyBudget.toNanos();
+        this.circuitBreaker = circuitBreaker;
+        this.ownsExecutor = executor == null;
+        this.executor = ownsExecutor ? newRemoteCallExecutor() : executor;
+        this.local = new LocalSlidingWindowRateLimiter(remote.getWindowSizeInMilliseconds(), localShare());
+
+        metrics.gauge("circuit_state", () -> circuitBreaker.getState().ordinal());
+        metrics.gauge("fallback", fallbackCount::sum);
+        metrics.gauge("local_share", local::getMaxRequests);
+    }
+
+    /**
+     * 尝试获取许可
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试一次性获取多个许可，不会因远程限流器故障抛出异常
+     * @param permits 许可数
+     * @return true 允许通过，false 被限流
+     */
+    public boolean tryAcquire(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        long permission = circuitBreaker.tryAcquirePermission();
+        if (permission != CircuitBreaker.NOT_PERMITTED) {
+            long start = System.nanoTime();
+            CompletableFuture<Boolean> call = null;
+            try {
+                call = CompletableFuture.supplyAsync(() -> remote.tryAcquire(permits), executor);
+                boolean allowed = call.get(latencyBudgetNanos, TimeUnit.NANOSECONDS);
+                circuitBreaker.onSuccess(permission);
+                metrics.recordLatency(redisLatency, System.nanoTime() - start);
+                return metrics.recordAcquire(allowed);
+            } catch (TimeoutException | ExecutionException e) {
+                circuitBreaker.onFailure(permission);
+                log.debug("Remote rate limiter call failed, falling back to the local share: {}", e.toString());
+            } catch (RejectedExecutionException e) {
+                circuitBreaker.onIgnored(permission); // 本地线程池已满，与远程是否健康无关，不计为失败
+                log.debug("Remote call executor is saturated, falling back to the local share");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // 不计为远程故障，本次按本地限流器判断
+                circuitBreaker.onIgnored(permission);
+            }
+            if (call != null) {
+                call.cancel(false); // 调用方不再等待结果，已在执行的远程调用由客户端的超时结束
+            }
+        }
+        return metrics.recordAcquire(tryAcquireLocally(permits));
+    }
+
+    /**
+     * @return 当前是否由本地限流器判断
+     */
+    public boolean isFallback() {
+        return circuitBreaker.getState() != CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * @return 由本地限流器判断的请求数
+     */
+    public long getFallbackCount() {
+        return fallbackCount.sum();
+    }
+
+    /**
+     * 关闭自行创建的线程池，远程限流器由调用方关闭
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+        local.close();
+    }
+
+    private boolean tryAcquireLocally(int permits) {
+        fallbackCount.increment();
+        long windowSizeInMilliseconds = remote.getWindowSizeInMilliseconds();
+        int share = localShare();
+        if (share != local.getMaxRequests() || windowSizeInMilliseconds != local.getWindowSizeInMilliseconds()) {
+            local.reconfigure(windowSizeInMilliseconds, share); // 节点数或全局阈值变化
+        }
+        return local.tryAcquire(permits);
+    }
+
+    /**
+     * 本节点的份额：全局阈值 / 节点数，至少为 1
+     */
+    private int localShare() {
+        return Math.max(1, remote.getMaxRequests() / Math.max(1, nodeCount.getAsInt()));
+    }
+
+    private static ExecutorService newRemoteCallExecutor() {
+        return new ThreadPoolExecutor(0, MAX_REMOTE_CALLS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), task -> {
+            Thread thread = new Thread(task, "resilient-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("========== 容错限流（Redis 故障时降级为本地份额） ==========");
+
+        // 连接一个不存在的 Redis，演示降级：全局每秒 9 个请求，3 个节点，本节点份额为每秒 3 个
+        try (JedisPooled jedis = new JedisPooled("127.0.0.1", 6390);
+             ResilientRateLimiter rateLimiter = new ResilientRateLimiter(
+                     new SlidingWindowRateLimiter(jedis, "my_api:rate_limiter", 1000, 9), () -> 3, Duration.ofMillis(50),
+                     new CircuitBreaker("my_api", 3, Duration.ofSeconds(2), 1), null)) {
+
+            for (int i = 0; i < 15; i++) {
+                boolean allowed = rateLimiter.tryAcquire();
+                log.info("\033[34m{}\033[0m\t: Request {}{}\033[0m [{}]", LocalDateTime.now(), i + 1,
+                        allowed ? "\u001B[32m allowed" : "\033[31m denied", rateLimiter.getCircuitBreaker().getState());
+
+                int sleepTimeInMills = (int) (Math.random() * 150) + 50; // 随机间隔 [50, 200）毫秒
+                Thread.sleep(sleepTimeInMills); // 模拟请求间隔
+            }
+            log.info("{}", rateLimiter.getMetrics());
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+package rate_limit.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 时间轮定时器
+ * <p>
+ * 由一个守护线程驱动，环形数组的每个槽位是一个双向链表，每隔 tick 推进一格并执行到期的任务；
+ * 延迟超过一圈的任务记录剩余圈数，每经过一次减 1。新增与取消任务都只写入无锁队列，由工作线程在下一格统一处理，
+ * 调度与取消均为 O(1)，十万个等待中的任务只占用十万个小对象，而不是十万个线程或 {@code ScheduledFuture}。
+ * <p>
+ * 没有待执行的任务时工作线程一直休眠，不会每个 tick 空转。
+ * 任务在工作线程上执行，必须足够轻量（例如唤醒线程、把回调提交给其他线程池），不能阻塞。
+ */
+@Slf4j
+public final class HashedWheelTimer implements AutoCloseable {
+
+    private static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // 默认每格 1 毫秒
+
+    private static final int DEFAULT_WHEEL_SIZE = 512; // 默认槽位数，一圈 512 毫秒
+
+    private final long tickNanos; // 每格的时长，纳秒
+
+    private final Bucket[] wheel; // 槽位，只由工作线程访问
+
+    private final int mask; // 槽位数 - 1
+
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>(); // 新增的任务
+
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>(); // 已取消、待从槽位移除的任务
+
+    private final AtomicInteger activeTimeouts = new AtomicInteger(); // 尚未执行或移除的任务数
+
+    private final long startNanos; // 时间轮的起始时间
+
+    private final Thread worker; // 工作线程
+
+    private volatile boolean closed; // 是否已关闭
+
+    /**
+     * 所有限流器共享的定时器，首次使用时启动
+     * @return 共享的定时器
+     */
+    public static HashedWheelTimer shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    private static final class SharedHolder {
+        static final HashedWheelTimer INSTANCE = new HashedWheelTimer("rate-limiter-timer", DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * 构造函数，创建后立即启动工作线程
+     * @param threadName 工作线程名称
+     * @param tickNanos 每格的时长，纳秒，即定时精度
+     * @param wheelSize 槽位数，向上取 2 的幂
+     */
+    public HashedWheelTimer(String threadName, long tickNanos, int wheelSize) {
+        if (tickNanos <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickNanos and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize * 2 - 1);
+        this.tickNanos = tickNanos;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 延迟执行任务
+     * @param task 任务，在工作线程上执行，不能阻塞
+     * @param delay 延迟时间
+     * @param unit 时间单位
+     * @return 可用于取消任务的句柄
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("timer is closed");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.add(timeout);
+        if (activeTimeouts.getAndIncrement() == 0) {
+            LockSupport.unpark(worker); // 工作线程可能因没有任务而休眠
+        }
+        return timeout;
+    }
+
+    /**
+     * 尚未执行或取消的任务数
+     * @return 任务数
+     */
+    public int size() {
+        return activeTimeouts.get();
+    }
+
+    /**
+     * 停止工作线程，未执行的任务不再执行
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!closed) {
+            if (activeTimeouts.get() == 0) {
+                removeCancelled();
+                LockSupport.park(this); // 没有任务，休眠到下次 schedule
+                tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos); // 休眠期间槽位均为空，直接跳到当前格
+                continue;
+            }
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            removeCancelled();
+            transferPending(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * 把新增的任务放入对应的槽位，已过期的任务放入当前格
+     */
+    private void transferPending(long tick) {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue; // 取消时已计数
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+
+        private static final int INIT = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+
+        private final Runnable task;
+
+        private final long deadline; // 相对时间轮起始时间的到期时间，纳秒
+
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // 以下字段只由工作线程访问
+        private long remainingRounds;
+
+        private Bucket bucket;
+
+        private Timeout prev, next;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务
+         * @return true 取消成功，false 任务已执行或已取消
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            timer.activeTimeouts.decrementAndGet();
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            timer.activeTimeouts.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.warn("Timer task {} threw an exception", task, e);
+            }
+        }
+    }
+
+    /**
+     * 槽位：双向链表
+     */
+    private static final class Bucket {
+
+        private Timeout head, tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * 执行本轮到期的任务，其余任务剩余圈数减 1
+         */
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return; // 已被移除
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package rate_limit.runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界、无锁的多生产者单消费者环形队列（Dmitry Vyukov 的 bounded MPMC 队列，消费端简化为单线程）
+ * <p>
+ * 每个槽位带一个序号：序号等于生产者的下标时槽位可写，等于下标 + 1 时槽位可读，消费后序号推进一圈。
+ * 生产者只 CAS 尾指针，消费者只写头指针，入队与出队都不加锁、不分配对象。
+ * 每个元素附带一个 long 时间戳（如入队时间），保存在平行数组中，用于统计排队时间。
+ * <p>
+ * {@link #offer} 可由任意线程调用；{@link #drain} 只能由同一个消费线程调用。
+ * @param <E> 元素类型
+ */
+public final class MpscRingBuffer<E> {
+
+    /**
+     * 出队元素的处理函数
+     * @param <E> 元素类型
+     */
+    @FunctionalInterface
+    public interface StampedConsumer<E> {
+        void accept(E element, long stamp);
+    }
+
+    private final int capacity; // 容量
+
+    private final AtomicReferenceArray<E> elements; // 元素
+
+    private final long[] stamps; // 元素的时间戳，写入后由序号的 volatile 写发布
+
+    private final AtomicLongArray sequences; // 槽位序号
+
+    private final AtomicLong tail = new AtomicLong(); // 下一个写入位置，生产者竞争
+
+    private final AtomicLong head = new AtomicLong(); // 下一个读取位置，只由消费者写入
+
+    /**
+     * 构造函数
+     * @param capacity 容量，即最多缓存的元素数
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.stamps = new long[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 入队
+     * @param element 元素，不能为 null
+     * @param stamp 时间戳
+     * @return true 入队成功，false 队列已满
+     */
+    public boolean offer(E element, long stamp) {
+        for (;;) {
+            long index = tail.get();
+            int slot = (int) (index % capacity);
+            long diff = sequences.get(slot) - index;
+            if (diff == 0) {
+                if (tail.compareAndSet(index, index + 1)) {
+                    elements.lazySet(slot, element);
+                    stamps[slot] = stamp;
+                    sequences.set(slot, index + 1); // 发布元素
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false; // 槽位尚未被消费，队列已满
+            }
+            // diff > 0：其他生产者已占用该位置，重新读取尾指针
+        }
+    }
+
+    /**
+     * 出队最多 limit 个元素，只能由消费线程调用
+     * @param consumer 元素处理函数
+     * @param limit 最多出队的元素数
+     * @return 实际出队的元素数
+     */
+    public int drain(StampedConsumer<E> consumer, int limit) {
+        long index = head.get();
+        int drained = 0;
+        while (drained < limit) {
+            int slot = (int) (index % capacity);
+            if (sequences.get(slot) != index + 1) {
+                break; // 队列为空，或生产者尚未完成写入
+            }
+            E element = elements.get(slot);
+            long stamp = stamps[slot];
+            elements.lazySet(slot, null);
+            sequences.set(slot, index + capacity); // 槽位留给下一圈的生产者
+            index++;
+            head.lazySet(index);
+            drained++;
+            consumer.accept(element, stamp);
+        }
+        return drained;
+    }
+
+    /**
+     * 当前元素数（并发修改时为近似值）
+     * @return 元素数
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,242 @@
+package rate_limit.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 限流器运行时：所有限流器共用的定时服务
+ * <p>
+ * 令牌补充、漏桶出桶、等待者唤醒等定时工作都登记到同一个 {@link HashedWheelTimer} 上，
+ * 不再为每个限流器创建线程池与 JVM 关闭钩子；动态创建（按租户、按路由）十万个限流器也只占用一个时间轮线程。
+ * <p>
+ * {@link #shared()} 为进程级的共享实例，由守护线程驱动，不能关闭，Spring Boot 自动配置的运行时 Bean 也是它；
+ * 需要随容器启停时单独创建实例并注入所有限流器，关闭时取消所有周期任务并停止时间轮线程，应先关闭使用它的限流器。
+ * 任务在时间轮线程上执行，必须足够轻量，不能阻塞。
+ */
+@Slf4j
+public final class RateLimiterRuntime implements AutoCloseable {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger(); // 运行时线程名称的序号
+
+    private static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // 默认每格 1 毫秒
+
+    private static final int DEFAULT_WHEEL_SIZE = 512; // 默认槽位数
+
+    private static final int MAX_CATCH_UP = 16; // 周期任务落后时最多连续补执行的次数
+
+    private final HashedWheelTimer timer; // 时间轮
+
+    private final boolean closeable; // 共享实例不能关闭
+
+    private final Set<PeriodicTask> periodicTasks = ConcurrentHashMap.newKeySet(); // 尚未取消的周期任务
+
+    private volatile boolean closed; // 是否已关闭
+
+    /**
+     * 进程内共享的运行时，首次使用时启动
+     * @return 共享的运行时
+     */
+    public static RateLimiterRuntime shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    private static final class SharedHolder {
+        static final RateLimiterRuntime INSTANCE = new RateLimiterRuntime(HashedWheelTimer.shared(), false);
+    }
+
+    /**
+     * 构造函数，使用独立的时间轮线程，每格 1 毫秒
+     */
+    public RateLimiterRuntime() {
+        this("rate-limiter-runtime-" + SEQUENCE.incrementAndGet(), DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * 构造函数
+     * @param threadName 时间轮线程名称
+     * @param tickNanos 每格的时长，纳秒，即定时精度
+     * @param wheelSize 槽位数
+     */
+    public RateLimiterRuntime(String threadName, long tickNanos, int wheelSize) {
+        this(new HashedWheelTimer(threadName, tickNanos, wheelSize), true);
+    }
+
+    private RateLimiterRuntime(HashedWheelTimer timer, boolean closeable) {
+        this.timer = timer;
+        this.closeable = closeable;
+    }
+
+    /**
+     * 底层的时间轮
+     * @return 时间轮
+     */
+    public HashedWheelTimer timer() {
+        return timer;
+    }
+
+    /**
+     * 延迟执行一次任务
+     * @param task 任务，在时间轮线程上执行，不能阻塞
+     * @param delay 延迟时间
+     * @param unit 时间单位
+     * @return 可用于取消任务的句柄
+     */
+    public HashedWheelTimer.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return timer.schedule(task, delay, unit);
+    }
+
+    /**
+     * 按固定速率周期执行任务
+     * <p>
+     * 下次执行时间按理论时刻推进，时间轮的调度延迟不会累积；落后超过一个周期时连续补执行，最多 16 次，之后放弃落后的部分。
+     * @param task 任务，在时间轮线程上执行，不能阻塞
+     * @param initialDelay 首次执行的延迟
+     * @param period 执行周期
+     * @param unit 时间单位
+     * @return 可用于取消任务的句柄
+     */
+    public Registration scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        long periodNanos = unit.toNanos(period);
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        if (closed) {
+            throw new IllegalStateException("runtime is closed");
+        }
+        PeriodicTask periodicTask = new PeriodicTask(task, periodNanos, System.nanoTime() + Math.max(0, unit.toNanos(initialDelay)));
+        periodicTasks.add(periodicTask);
+        periodicTask.scheduleNext(System.nanoTime());
+        return periodicTask;
+    }
+
+    /**
+     * 尚未执行或取消的定时任务数，包括限流器登记的一次性任务
+     * @return 任务数
+     */
+    public int pendingTasks() {
+        return timer.size();
+    }
+
+    /**
+     * 尚未取消的周期任务数
+     * @return 任务数
+     */
+    public int periodicTasks() {
+        return periodicTasks.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 取消所有周期任务并停止时间轮线程，未执行的任务不再执行
+     * @throws IllegalStateException 关闭共享实例
+     */
+    @Override
+    public void close() {
+        if (!closeable) {
+            throw new IllegalStateException("the shared runtime cannot be closed");
+        }
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (PeriodicTask periodicTask : periodicTasks) {
+            periodicTask.cancel();
+        }
+        timer.close();
+        log.info("Rate limiter runtime closed");
+    }
+
+    /**
+     * 周期任务句柄
+     */
+    public interface Registration extends AutoCloseable {
+
+        /**
+         * 取消任务，正在执行的一次不受影响
+         */
+        void cancel();
+
+        boolean isCancelled();
+
+        @Override
+        default void close() {
+            cancel();
+        }
+    }
+
+    /**
+     * 周期任务：每次执行后在时间轮上登记下一次，同一时刻只有一个待执行的 Timeout
+     */
+    private final class PeriodicTask implements Registration, Runnable {
+
+        private final Runnable task;
+
+        private final long periodNanos; // 执行周期，纳秒
+
+        private long nextRunAt; // 下次执行的理论时刻，只由时间轮线程访问（首次登记前由创建线程写入）
+
+        private volatile HashedWheelTimer.Timeout timeout; // 待执行的下一次
+
+        private volatile boolean cancelled;
+
+        PeriodicTask(Runnable task, long periodNanos, long firstRunAt) {
+            this.task = task;
+            this.periodNanos = periodNanos;
+            this.nextRunAt = firstRunAt;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            long now = System.nanoTime();
+            int runs = 0;
+            do {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.warn("Periodic task {} threw an exception", task, e);
+                }
+                nextRunAt += periodNanos;
+            } while (nextRunAt - now <= 0 && ++runs < MAX_CATCH_UP && !cancelled);
+            if (nextRunAt - now <= 0) {
+                nextRunAt = now + periodNanos; // 落后太多，放弃补执行
+            }
+            scheduleNext(now);
+        }
+
+        void scheduleNext(long now) {
+            if (cancelled || closed) {
+                return;
+            }
+            timeout = timer.schedule(this, nextRunAt - now, TimeUnit.NANOSECONDS);
+            if (cancelled) {
+                timeout.cancel(); // 登记的同时被取消
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            HashedWheelTimer.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+            periodicTasks.remove(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package rate_limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 等待队列与时间轮唤醒，用惰性补充的令牌桶驱动（初始令牌数为 0）
+ */
+public class AbstractRateLimiterTest {
+
+    @Test
+    void testWaitersAreServedInOrderWithoutBarging() throws Exception {
+        try (TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, Duration.ofMillis(100))) {
+            Queue<Integer> order = new ConcurrentLinkedQueue<>();
+            List<CompletableFuture<Void>> futures = IntStream.range(0, 3)
+                    .mapToObj(i -> limiter.acquireAsync(1).thenRun(() -> order.add(i)))
+                    .toList();
+
+            // 有等待者时非阻塞获取不能插队
+            assertThat(limiter.tryAcquire()).isFalse();
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+            assertThat(order).containsExactly(0, 1, 2);
+        }
+    }
+
+    @Test
+    void testExpiredHeadDoesNotBlockLaterWaiters() throws Exception {
+        try (TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, Duration.ofMillis(200))) {
+            CompletableFuture<Void> head = limiter.acquireAsync(1, 20, TimeUnit.MILLISECONDS);
+            CompletableFuture<Void> next = limiter.acquireAsync(1);
+
+            assertThatThrownBy(() -> head.get(1, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(TimeoutException.class);
+            next.get(1, TimeUnit.SECONDS); // 队首超时后未占用许可，后面的等待者照常获取
+        }
+    }
+
+    @Test
+    void testTimeoutRacingWithAcquireCompletesExactlyOnce() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            // 超时与令牌生成几乎同时到期，无论哪个先到，Future 都只以一种结果完成，且不会挂起
+            try (TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, Duration.ofMillis(10))) {
+                CompletableFuture<Void> future = limiter.acquireAsync(1, 10, TimeUnit.MILLISECONDS);
+                try {
+                    future.get(1, TimeUnit.SECONDS);
+                    assertThat(future.isCompletedExceptionally()).isFalse();
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+                }
+                assertThat(limiter.getMetrics().getAllowedCount() + limiter.getMetrics().getDeniedCount()).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    void testCloseCancelsWaiters() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, Duration.ofHours(1));
+        CompletableFuture<Void> future = limiter.acquireAsync(1);
+        limiter.close();
+
+        assertThatThrownBy(() -> future.get(1, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+        assertThatThrownBy(() -> limiter.acquireAsync(1)).isInstanceOf(IllegalStateException.class);
+    }
+
+}
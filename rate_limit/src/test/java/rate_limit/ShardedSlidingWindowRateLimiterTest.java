@@ -0,0 +1,108 @@
+package rate_limit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 需要多个本地 Redis 进程，如 redis-server --port 6379/6380/6381，运行：
+ * mvn test -pl rate_limit -Dredis.shards=127.0.0.1:6379,127.0.0.1:6380,127.0.0.1:6381
+ */
+@EnabledIfSystemProperty(named = "redis.shards", matches = ".+")
+public class ShardedSlidingWindowRateLimiterTest {
+
+    private final List<HostAndPort> endpoints = Arrays.stream(System.getProperty("redis.shards", "").split(","))
+            .filter(endpoint -> !endpoint.isBlank())
+            .map(HostAndPort::from)
+            .toList();
+
+    private ShardedSlidingWindowRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        for (HostAndPort endpoint : endpoints) {
+            try (Jedis jedis = new Jedis(endpoint)) {
+                jedis.flushDB();
+            }
+        }
+        limiter = new ShardedSlidingWindowRateLimiter(endpoints.subList(0, endpoints.size() - 1), 60_000, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.close();
+    }
+
+    @Test
+    void testEachKeyIsLimitedOnItsShard() {
+        Set<String> shards = new HashSet<>();
+        for (int user = 0; user < 20; user++) {
+            String key = "user:" + user;
+            shards.add(limiter.shardOf(key));
+            int allowed = 0;
+            for (int i = 0; i < 8; i++) {
+                if (limiter.tryAcquire(key)) {
+                    allowed++;
+                }
+            }
+            assertThat(allowed).isEqualTo(5);
+            try (Jedis jedis = new Jedis(HostAndPort.from(limiter.shardOf(key)))) {
+                assertThat(jedis.exists(key)).isTrue();
+            }
+        }
+        assertThat(shards).hasSizeGreaterThan(1);
+    }
+
+    @Test
+    void testBatchIsGroupedByShard() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            keys.add("batch:" + i % 10); // 10 个 key，各 6 次
+        }
+        assertThat(count(limiter.tryAcquireBatch(keys))).isEqualTo(50);
+        assertThat(count(limiter.tryAcquireBatch(keys))).isZero();
+    }
+
+    @Test
+    void testAddingShardMovesSomeKeys() {
+        List<String> before = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            before.add(limiter.shardOf("user:" + i));
+        }
+        HostAndPort added = endpoints.get(endpoints.size() - 1);
+        limiter.addShard(added);
+
+        int moved = 0;
+        for (int i = 0; i < 1000; i++) {
+            String shard = limiter.shardOf("user:" + i);
+            if (!shard.equals(before.get(i))) {
+                assertThat(shard).isEqualTo(added.toString());
+                moved++;
+            }
+        }
+        assertThat(moved).isPositive();
+        assertThat(limiter.getMetrics().getGauges()).containsEntry("shards", (long) endpoints.size());
+    }
+
+    private static int count(boolean[] results) {
+        int count = 0;
+        for (boolean result : results) {
+            if (result) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,92 @@
+package rate_limit.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    private final ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes(3), 160);
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void testHashMatchesJedisMurmurHash() {
+        for (String key : new String[]{"", "a", "1234567", "12345678", "123456789", "user:42", "redis-0#159", "限流:用户"}) {
+            assertThat(ConsistentHashRing.hash(key)).isEqualTo(redis.clients.jedis.util.Hashing.MURMUR_HASH.hash(key));
+        }
+    }
+
+    @Test
+    void testKeysAreSpreadEvenly() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.get("user:" + i), 1, Integer::sum);
+        }
+        assertThat(counts).hasSize(3);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 3 * 8 / 10, KEYS / 3 * 12 / 10));
+    }
+
+    @Test
+    void testAddingNodeOnlyMovesKeysToIt() {
+        ConsistentHashRing<String> grown = ring.withNode("redis-3", "redis-3");
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user:" + i;
+            if (!ring.get(key).equals(grown.get(key))) {
+                assertThat(grown.get(key)).isEqualTo("redis-3");
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10); // 约 1/4 的 key
+    }
+
+    @Test
+    void testRemovingNodeOnlyMovesItsKeys() {
+        ConsistentHashRing<String> shrunk = ring.withoutNode("redis-1");
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user:" + i;
+            if (!ring.get(key).equals("redis-1")) {
+                assertThat(shrunk.get(key)).isEqualTo(ring.get(key));
+            }
+        }
+        assertThat(shrunk.nodes()).containsOnlyKeys("redis-0", "redis-2");
+    }
+
+    @Test
+    void testHashTagKeysShareNode() {
+        for (int i = 0; i < 100; i++) {
+            String tenant = "tenant-" + i;
+            assertThat(ring.get("{" + tenant + "}:user-1")).isEqualTo(ring.get(tenant));
+            assertThat(ring.get("{" + tenant + "}:user-2")).isEqualTo(ring.get(tenant));
+        }
+    }
+
+    @Test
+    void testSameNodesGiveSameRouting() {
+        ConsistentHashRing<String> other = new ConsistentHashRing<>(nodes(3), 160);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(other.get("user:" + i)).isEqualTo(ring.get("user:" + i));
+        }
+    }
+
+    @Test
+    void testEmptyRingIsRejected() {
+        assertThatThrownBy(() -> new ConsistentHashRing<>(Map.of(), 160)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Map<String, String> nodes(int count) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            nodes.put("redis-" + i, "redis-" + i);
+        }
+        return nodes;
+    }
+
+}
@@ -0,0 +1,66 @@
+package rate_limit.resilience;
+
+import rate_limit.LocalSlidingWindowRateLimiter;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis 的本地替身：多个节点共享的滑动窗口计数，可注入延迟与连接故障
+ */
+class FaultInjectingRedis implements GlobalRateLimiter {
+
+    private final LocalSlidingWindowRateLimiter window; // 所有节点共享的计数
+
+    private final AtomicInteger calls = new AtomicInteger(); // 收到的调用次数，包括失败的调用
+
+    private volatile long latencyMillis; // 每次调用注入的延迟
+
+    private volatile boolean down; // 是否模拟连接失败
+
+    FaultInjectingRedis(long windowSizeInMilliseconds, int maxRequests) {
+        this.window = new LocalSlidingWindowRateLimiter(windowSizeInMilliseconds, maxRequests);
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+        calls.incrementAndGet();
+        long latency = latencyMillis;
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JedisConnectionException(e);
+            }
+        }
+        if (down) {
+            throw new JedisConnectionException("Connection refused");
+        }
+        return window.tryAcquire(permits);
+    }
+
+    @Override
+    public long getWindowSizeInMilliseconds() {
+        return window.getWindowSizeInMilliseconds();
+    }
+
+    @Override
+    public int getMaxRequests() {
+        return window.getMaxRequests();
+    }
+
+    void setLatency(Duration latency) {
+        this.latencyMillis = latency.toMillis();
+    }
+
+    void setDown(boolean down) {
+        this.down = down;
+    }
+
+    int calls() {
+        return calls.get();
+    }
+
+}
@@ -0,0 +1,121 @@
+package rate_limit.resilience;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResilientRateLimiterTest {
+
+    private static final long WINDOW = 60_000; // 窗口足够长，测试期间计数不会滑出
+
+    private final FaultInjectingRedis redis = new FaultInjectingRedis(WINDOW, 30);
+
+    private final AtomicInteger nodes = new AtomicInteger(3);
+
+    private final ResilientRateLimiter limiter = new ResilientRateLimiter(redis, nodes::get, Duration.ofMillis(50),
+            new CircuitBreaker("test", 3, Duration.ofMillis(300), 1), null);
+
+    @AfterEach
+    void tearDown() {
+        limiter.close();
+    }
+
+    @Test
+    void testHealthyRedisEnforcesGlobalLimit() {
+        assertThat(allowed(40)).isEqualTo(30);
+        assertThat(limiter.getFallbackCount()).isZero();
+        assertThat(limiter.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void testRedisDownFallsBackToLocalShare() {
+        redis.setDown(true);
+
+        assertThat(allowed(40)).isEqualTo(10); // 30 / 3 个节点
+        assertThat(limiter.isFallback()).isTrue();
+        assertThat(redis.calls()).isEqualTo(3); // 熔断后不再调用 Redis
+    }
+
+    @Test
+    void testSlowRedisIsBoundedByLatencyBudget() {
+        redis.setLatency(Duration.ofSeconds(1));
+
+        long start = System.nanoTime();
+        assertThat(allowed(3)).isEqualTo(3);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+        assertThat(limiter.isFallback()).isTrue();
+
+        start = System.nanoTime();
+        allowed(100);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(200)); // 熔断后不再等待
+    }
+
+    @Test
+    void testLocalShareFollowsNodeCount() {
+        redis.setDown(true);
+        nodes.set(5);
+
+        assertThat(allowed(40)).isEqualTo(6); // 30 / 5 个节点
+        assertThat(limiter.getMetrics().getGauges()).containsEntry("local_share", 6L);
+    }
+
+    @Test
+    void testFailsBackWhenRedisRecovers() throws InterruptedException {
+        redis.setDown(true);
+        allowed(5);
+        assertThat(limiter.isFallback()).isTrue();
+
+        redis.setDown(false);
+        allowed(5);
+        assertThat(limiter.isFallback()).isTrue(); // 熔断期间仍使用本地份额
+
+        Thread.sleep(400);
+        int calls = redis.calls();
+        assertThat(allowed(1)).isEqualTo(1); // 探测请求
+        assertThat(redis.calls()).isEqualTo(calls + 1);
+        assertThat(limiter.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(allowed(40)).isEqualTo(29); // 恢复按全局阈值限流
+    }
+
+    @Test
+    void testFailedProbeReopensCircuit() throws InterruptedException {
+        redis.setDown(true);
+        allowed(5);
+
+        Thread.sleep(400);
+        int calls = redis.calls();
+        allowed(10);
+        assertThat(redis.calls()).isEqualTo(calls + 1); // 只放行一个探测请求
+        assertThat(limiter.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void testStaleResultIsIgnored() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("stale", 1, Duration.ofMillis(300), 1);
+        long beforeOpen = circuitBreaker.tryAcquirePermission();
+        circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+        assertThat(circuitBreaker.tryAcquirePermission()).isEqualTo(CircuitBreaker.NOT_PERMITTED);
+
+        Thread.sleep(400);
+        circuitBreaker.onSuccess(circuitBreaker.tryAcquirePermission()); // 探测成功
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        circuitBreaker.onFailure(beforeOpen); // 熔断前发出、恢复后才超时的调用
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private int allowed(int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if (limiter.tryAcquire()) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+}